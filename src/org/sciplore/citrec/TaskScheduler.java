@@ -0,0 +1,223 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs independent tasks (a document, a file, a method to evaluate, ...) on 
+ * a fixed number of work-stealing worker threads.
+ * 
+ * Each worker owns a resource, e.g. a database connection, which is created 
+ * on its first task and closed when the worker terminates. Tasks get the 
+ * resource of the worker running them, so a resource is never used by two 
+ * tasks at the same time.
+ * 
+ * The number of submitted but unfinished tasks is bounded, {@link #submit(Task)} 
+ * blocks until a slot is free. Failed tasks are logged and counted, they do 
+ * not stop the other tasks.
+ *
+ * @param <R> the type of the per worker resource
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TaskScheduler<R> {
+	private static Logger logger = LoggerFactory.getLogger(TaskScheduler.class);
+	
+	/**
+	 * Unit of work.
+	 *
+	 * @param <R> the type of the per worker resource
+	 */
+	public interface Task<R> {
+		/**
+		 * @param resource the resource of the worker running the task
+		 * @throws Exception on any error
+		 */
+		void run(R resource) throws Exception;
+	}
+	
+	/**
+	 * Creates and closes the per worker resources.
+	 *
+	 * @param <R> the type of the per worker resource
+	 */
+	public interface Resources<R> {
+		/**
+		 * @return a new resource
+		 * @throws Exception on any error
+		 */
+		R open() throws Exception;
+		
+		/**
+		 * @param resource the resource to close
+		 * @throws Exception on any error
+		 */
+		void close(R resource) throws Exception;
+	}
+	
+	private final ForkJoinPool pool;
+	private final Resources<R> resources;
+	private final Semaphore pending;
+	private final AtomicInteger failures = new AtomicInteger();
+	// resource of the current worker thread, closed by the worker on termination
+	private final ThreadLocal<R> resource = new ThreadLocal<R>();
+	
+	/**
+	 * @param numThreads the number of worker threads
+	 * @param resources the factory for the per worker resources
+	 */
+	public TaskScheduler(int numThreads, Resources<R> resources) {
+		this(numThreads, numThreads * 4, resources);
+	}
+	
+	/**
+	 * @param numThreads the number of worker threads
+	 * @param maxPending the maximum number of submitted but unfinished tasks
+	 * @param resources the factory for the per worker resources
+	 */
+	public TaskScheduler(int numThreads, int maxPending, Resources<R> resources) {
+		this.resources = resources;
+		this.pending = new Semaphore(Math.max(1, maxPending));
+		this.pool = new ForkJoinPool(Math.max(1, numThreads), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				return new Worker(pool);
+			}
+		}, null, true);
+	}
+	
+	/**
+	 * Factory for per worker database connections configured by the 
+	 * properties <code>db.url</code>, <code>db.user</code> and 
+	 * <code>db.password</code>. The driver must be loaded already.
+	 *
+	 * @param p the properties
+	 * @return the factory
+	 */
+	public static Resources<Connection> connections(final Properties p) {
+		return new Resources<Connection>() {
+			public Connection open() throws Exception {
+				return DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
+			}
+			
+			public void close(Connection db) throws Exception {
+				db.close();
+			}
+		};
+	}
+	
+	/**
+	 * Submit a task. Blocks while the maximum number of tasks is pending.
+	 *
+	 * @param task the task
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void submit(final Task<R> task) throws InterruptedException {
+		pending.acquire();
+		try {
+			pool.execute(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				protected void compute() {
+					try {
+						task.run(resource());
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						logger.error("Task failed.", e);
+					} finally {
+						pending.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			pending.release();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Wait until all submitted tasks are finished, stop the workers and 
+	 * close their resources.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void shutdown() throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @return the number of tasks that threw an exception
+	 */
+	public int failures() {
+		return failures.get();
+	}
+	
+	/**
+	 * The resource of the calling worker thread, opened on first use.
+	 *
+	 * @return the resource
+	 * @throws Exception if the resource cannot be opened
+	 */
+	private R resource() throws Exception {
+		R r = resource.get();
+		if (r == null) {
+			r = resources.open();
+			resource.set(r);
+		}
+		return r;
+	}
+	
+	/**
+	 * Worker thread closing its resource on termination.
+	 */
+	private class Worker extends ForkJoinWorkerThread {
+		Worker(ForkJoinPool pool) {
+			super(pool);
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.ForkJoinWorkerThread#onTermination(java.lang.Throwable)
+		 */
+		protected void onTermination(Throwable exception) {
+			R r = resource.get();
+			if (r != null) {
+				try {
+					resources.close(r);
+				} catch (Exception e) {
+					logger.error("Could not close worker resource.", e);
+				}
+				resource.remove();
+			}
+			super.onTermination(exception);
+		}
+	}
+}
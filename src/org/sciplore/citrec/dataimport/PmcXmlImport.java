@@ -35,6 +35,7 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.util.Version;
 import org.sciplore.citrec.Helper;
+import org.sciplore.citrec.TaskScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,8 +52,8 @@ public class PmcXmlImport {
 	private static File indexDir;
 	private static File dtdDir;
 	private static IndexWriter indexWriter;
-	private static Connection db[];
-	private static Thread t[];
+	private static Connection db;
+	private static TaskScheduler<Connection> scheduler;
 	private static Logger logger = LoggerFactory.getLogger(PmcXmlImport.class);
 	private static int i = 0;
 	
@@ -103,16 +104,10 @@ public class PmcXmlImport {
 
 			// initialize database connections begin
 			Class.forName(p.getProperty("db.driver"));
-			db = new Connection[numThreads];
-			
-			for (int i = 0; i < numThreads; i++) {
-				db[i] = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
-			}
+			db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 			// initialize database connections end
-			
-			assert db.length > 0;
 	
-			Statement stmt = db[0].createStatement();
+			Statement stmt = db.createStatement();
 
 			// disable keys on database for faster inserts begin
 			stmt.execute("ALTER TABLE `document` DISABLE KEYS");
@@ -125,14 +120,10 @@ public class PmcXmlImport {
 
 			indexWriter = new IndexWriter(new NIOFSDirectory(indexDir), new IndexWriterConfig(Version.LUCENE_34, new StandardAnalyzer(Version.LUCENE_34)));
 
-			t = new PmcXmlParser[numThreads];
+			// one database connection per worker
+			scheduler = new TaskScheduler<Connection>(numThreads, TaskScheduler.connections(p));
 			processDirectory(pmcXmlDir);
-			
-			for (Thread thread : t) {
-				if (thread != null) {
-					thread.join();
-				}
-			}
+			scheduler.shutdown();
 			
 			logger.info("Finished processing XML files.");
 
@@ -160,60 +151,39 @@ public class PmcXmlImport {
 			e.printStackTrace();
 		} finally {
 			try {
-				for (Connection d : db) {
-					d.close();
+				if (db != null) {
+					db.close();
 				}
 			} catch (Exception e) {
 				logger.error("Could not close database connection.");
 			}
 		}
+		if (scheduler != null && scheduler.failures() > 0) {
+			logger.error("{} XML files could not be imported.", scheduler.failures());
+			System.exit(-1);
+		}
 		logger.debug("PMC XML Import finished.");
 	}
 	
 	/**
 	 * Processes the directory recursively including all sub-directories and 
-	 * calls a Thread for the XML parser for each XML file.
+	 * submits a task for the XML parser for each XML file.
 	 *
 	 * @param dir The directory
 	 * @throws IOException 
 	 * @throws CorruptIndexException 
+	 * @throws InterruptedException 
 	 */
-	private static void processDirectory(File dir) throws CorruptIndexException, IOException {
-		int i = 0;
-		int j = 0;
-		
+	private static void processDirectory(File dir) throws CorruptIndexException, IOException, InterruptedException {
 		logger.info("Processing directory " + dir.getAbsolutePath());
 		for (File f : dir.listFiles()) {
 			if (f.isDirectory()) { // file is a directory
 				processDirectory(f); // recurse for sub-directory
 			} else if (f.getName().endsWith(".nxml")) { // file is a XML file to parse
-				// assign file to a thread begin
-				while (true) {
-					if (i == numThreads) {
-		    			i = 0;
-		    		}
-
-		    		if (t[i] == null || !t[i].isAlive()) {
-		    			t[i] = null;
-		    			logger.info("Processing file " + f.getName());
-		    			t[i] = new PmcXmlParser(f, db[i], indexWriter, pmcXmlDir, pmcTxtDir, dtdDir);
-		    			t[i].start(); // run Thread
-		    			i++;
-		    			break;
-		    		}
-		    		if (j == numThreads) {
-				    	try {
-							Thread.sleep(100);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-						j = 0;
-		    		}
-
-		    		i++;
-		    		j++;
-		    	}
-				// assign file to a thread end
+				// assign file to a worker begin
+				logger.info("Processing file " + f.getName());
+				scheduler.submit(new PmcXmlParser(f, indexWriter, pmcXmlDir, pmcTxtDir, dtdDir));
+				// assign file to a worker end
 				
 				if (++PmcXmlImport.i % 500 == 0) {
 					indexWriter.commit();
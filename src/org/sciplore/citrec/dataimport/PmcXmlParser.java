@@ -42,6 +42,7 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.Field.TermVector;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.IndexWriter;
+import org.sciplore.citrec.TaskScheduler;
 import org.sciplore.citrec.resources.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,11 +51,11 @@ import org.xml.sax.InputSource;
 import spiaotools.SentParDetector;
 
 /**
- * Thread that calls the Handler for XML parsing.
+ * Task that calls the Handler for XML parsing.
  * @author Norman Meuschke <a href="mailto:meuschke@sciplore.org">meuschke@sciplore.org</a>
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
-public class PmcXmlParser extends Thread {	
+public class PmcXmlParser implements TaskScheduler.Task<Connection> {	
 	//IO
 	private File xmlDir;
 	private File txtDir;
@@ -86,14 +87,12 @@ public class PmcXmlParser extends Thread {
 	 * Initialize the XML parser.
 	 * 
 	 * @param f the XML file
-	 * @param db the database connection
 	 * @param dtdDir the directory with required DTDs
 	 */
-	public PmcXmlParser (File f, Connection db, IndexWriter iw, File xmlDir, File txtDir, File dtdDir) {
+	public PmcXmlParser (File f, IndexWriter iw, File xmlDir, File txtDir, File dtdDir) {
 		this.xmlDir = xmlDir;
 		this.txtDir = txtDir;
 		this.dtdDir = dtdDir;
-		this.con = db;
 		this.f = f;
 		this.indexWriter = iw;
 		validTypes.add("research-article");
@@ -106,149 +105,151 @@ public class PmcXmlParser extends Thread {
 
 	/**
 	 * Runs the XML parser.
+	 * 
+	 * @param db the database connection of the worker
+	 * @throws Exception if the file cannot be read, parsed or stored
 	 */
-	public void run() {
-		try {
-			//Read complete file
-			byte fisBuf[] = new byte[(int) f.length()];
-			int read = 0;
-			FileInputStream fis = new FileInputStream(f);
-			while (read < fisBuf.length) {
-				read += fis.read(fisBuf, read, fisBuf.length - read);
+	public void run(Connection db) throws Exception {
+		this.con = db;
+		//Read complete file
+		byte fisBuf[] = new byte[(int) f.length()];
+		int read = 0;
+		FileInputStream fis = new FileInputStream(f);
+		while (read < fisBuf.length) {
+			read += fis.read(fisBuf, read, fisBuf.length - read);
+		}
+		
+		//Separate body of XML file
+		String splitCont[] = new String(fisBuf).split("\\<body.*?\\>|\\</body.*?\\>");
+		//Some files in the dataset are scanned and do not offer XML markup for relevant content
+		//therefore only files with body tags are processed
+		
+		if (splitCont.length == 3) {
+			String filename[] = f.getAbsolutePath().split(xmlDir.getAbsolutePath());
+			if (filename.length != 2 && filename[1].length() < 1) {
+				fis.close();
+				throw new Exception("Cannot construct filename for txt file.");
 			}
+			File txtFile = new File(txtDir, filename[1].replaceFirst(".nxml$", ".txt"));
 			
-			//Separate body of XML file
-			String splitCont[] = new String(fisBuf).split("\\<body.*?\\>|\\</body.*?\\>");
-			//Some files in the dataset are scanned and do not offer XML markup for relevant content
-			//therefore only files with body tags are processed
+			txtFile.getParentFile().mkdirs();
 			
-			if (splitCont.length == 3) {
-				String filename[] = f.getAbsolutePath().split(xmlDir.getAbsolutePath());
-				if (filename.length != 2 && filename[1].length() < 1) {
-					fis.close();
-					throw new Exception("Cannot construct filename for txt file.");
-				}
-				File txtFile = new File(txtDir, filename[1].replaceFirst(".nxml$", ".txt"));
-				
-				txtFile.getParentFile().mkdirs();
-				
-				PrintStream fous = new PrintStream(txtFile);
-
-				//Substitute section and paragraph tags
-				Pattern searchTerm = Pattern.compile("\\<sec[^\\>]*?\\>|\\<p[^\\>]*?\\>|" +
-						"\\</sec[^\\>]*?\\>|\\</p[^\\>]*?\\>");
-				Matcher matcher = searchTerm.matcher(splitCont[1]);
-				
-				//Clean body from other tags
-				StringBuffer sectionCleaned = new StringBuffer();
-
-				while (matcher.find()) {
-					matcher.appendReplacement(sectionCleaned, "\n");
-				}
-				matcher.appendTail(sectionCleaned);
-				matcher=null;
-				
-				//Substitute other tags and character entity tags
-				searchTerm = Pattern.compile("\\<.*?\\>|\\</.*?\\>|&#\\w{1,6};");
-				StringBuffer contentCleaned = new StringBuffer();
-				matcher = searchTerm.matcher(sectionCleaned);
-
-				while (matcher.find()) {
-					matcher.appendReplacement(contentCleaned, "");
-				}
-				matcher.appendTail(contentCleaned);
-				matcher=null;
-				
-				fous.append(contentCleaned);
-				
-				// Split Words and Sentences
-				String xml = splitCont[0] + "<body>" + splitWordSentences(splitCont[1]) + "</body>" + splitCont[2];
-				
-				//Initiate SAX XML parser 
-				//			System.clearProperty("javax.xml.parsers.SAXParserFactory");
-				//			System.setProperty("javax.xml.parsers.SAXParserFactory","org.apache.xerces.jaxp.SAXParserFactoryImpl") ;
-				factory = SAXParserFactory.newInstance();
-				factory.setValidating(false);
-				factory.setNamespaceAware(false);
-				factory.setFeature("http://xml.org/sax/features/validation", false);
-				parser = factory.newSAXParser();
-	
-				//DB update statements
-				stmtDoc = con.prepareStatement("INSERT INTO document " +
-						"(`pmcId`, `pmId`, `title`, `type`, `year`, `month`, `file`) " +
-						"VALUES(?, ?, ?, ?, ?, ?, ?)");
-	
-				stmtAuth = con.prepareStatement("INSERT INTO author " +
-						"(`pmcId`, `lastname`, `firstname`) VALUES(?, ?, ?)");
-	
-				stmtCit = con.prepareStatement("INSERT INTO citation " +
-						"(`document`, `reference`, `cnt`, `citgrp`, `character`, `word`, `sentence`, `paragraph`, `section`) " +
-						"VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)");
-	
-				stmtRef = con.prepareStatement("INSERT INTO reference " +
-						"(`document`, `refId`, `refPmid`, `refPmcId`, `refMedId`, `refDoi`, `refAuthKey`, `refTitKey`) " +
-						"VALUES(?, ?, ?, ?, ?, ?, ?, ?)");
-	
-				//Precompiled patterns to be used in content handler
-				sentWordSplit = Pattern.compile("\\*�[WS]/�");
-				multCitSplit = Pattern.compile("^[\\D&&\\W]?[\\s]*?(\\d+)[\\s]*?[\\D&&\\W]?[\\s]*?[\u2010\u2011\u2012\\u2013\u2212\\u002D\u00AD][\\s]*?[\\D&&\\W]?[\\s]*?(\\d+)[\\s]*?[\\D&&\\W]?$");
-				cleanRefKeys = Pattern.compile("[^\\p{Lower}\\p{Upper}]"); 
+			PrintStream fous = new PrintStream(txtFile);
 
-				Document doc = new Document();
-				//Parse file
-				try {
-					doc.file = f.getAbsolutePath().replaceFirst(xmlDir.getAbsolutePath() + File.separator, "");
-					handler = new PmcXmlHandler(f, stmtDoc, stmtAuth, stmtCit, stmtRef, multCitSplit, sentWordSplit, cleanRefKeys, dtdDir.getAbsolutePath(), doc);
-					parser.parse(new InputSource(new StringReader(xml)), handler);
-				} 
-				//Errors during parsing or moving files
-				catch (Exception eParse) {
-					logger.error("Error: " + eParse.getMessage() + ": "+f);
-					eParse.printStackTrace();
-				}
-				finally {
-					try {
-						stmtDoc.close();
-						stmtAuth.close();
-						stmtCit.close();
-						stmtRef.close();
-					} catch (SQLException e) {
-						e.printStackTrace();
-					}
-					handler = null;
-				} //Clear document specific data structures	
-				
-				if (validTypes.contains(doc.type)) {
-					org.apache.lucene.document.Document luceneDoc = new org.apache.lucene.document.Document();
-					luceneDoc.add(new NumericField("pmcId", Store.YES, false).setIntValue(doc.pmcId));
-					luceneDoc.add(new Field("file", filename[1], Store.YES, Index.NO));
-					luceneDoc.add(new Field("title", doc.title, Store.YES, Index.ANALYZED, TermVector.YES));
-					luceneDoc.add(new Field("abstract", doc.abstractText.toString(), Store.YES, Index.ANALYZED, TermVector.YES));
-					luceneDoc.add(new Field("text", contentCleaned.toString(), Store.YES, Index.ANALYZED, TermVector.YES));
-					indexWriter.addDocument(luceneDoc);
-					luceneDoc = null;
-				}
+			//Substitute section and paragraph tags
+			Pattern searchTerm = Pattern.compile("\\<sec[^\\>]*?\\>|\\<p[^\\>]*?\\>|" +
+					"\\</sec[^\\>]*?\\>|\\</p[^\\>]*?\\>");
+			Matcher matcher = searchTerm.matcher(splitCont[1]);
+			
+			//Clean body from other tags
+			StringBuffer sectionCleaned = new StringBuffer();
 
-				doc = null;
-				contentCleaned = null;
-				filename = null;
-				txtFile = null;
+			while (matcher.find()) {
+				matcher.appendReplacement(sectionCleaned, "\n");
+			}
+			matcher.appendTail(sectionCleaned);
+			matcher=null;
+			
+			//Substitute other tags and character entity tags
+			searchTerm = Pattern.compile("\\<.*?\\>|\\</.*?\\>|&#\\w{1,6};");
+			StringBuffer contentCleaned = new StringBuffer();
+			matcher = searchTerm.matcher(sectionCleaned);
+
+			while (matcher.find()) {
+				matcher.appendReplacement(contentCleaned, "");
+			}
+			matcher.appendTail(contentCleaned);
+			matcher=null;
+			
+			fous.append(contentCleaned);
+			
+			// Split Words and Sentences
+			String xml = splitCont[0] + "<body>" + splitWordSentences(splitCont[1]) + "</body>" + splitCont[2];
+			
+			//Initiate SAX XML parser 
+			//			System.clearProperty("javax.xml.parsers.SAXParserFactory");
+			//			System.setProperty("javax.xml.parsers.SAXParserFactory","org.apache.xerces.jaxp.SAXParserFactoryImpl") ;
+			factory = SAXParserFactory.newInstance();
+			factory.setValidating(false);
+			factory.setNamespaceAware(false);
+			factory.setFeature("http://xml.org/sax/features/validation", false);
+			parser = factory.newSAXParser();
+
+			//DB update statements
+			stmtDoc = con.prepareStatement("INSERT INTO document " +
+					"(`pmcId`, `pmId`, `title`, `type`, `year`, `month`, `file`) " +
+					"VALUES(?, ?, ?, ?, ?, ?, ?)");
+
+			stmtAuth = con.prepareStatement("INSERT INTO author " +
+					"(`pmcId`, `lastname`, `firstname`) VALUES(?, ?, ?)");
+
+			stmtCit = con.prepareStatement("INSERT INTO citation " +
+					"(`document`, `reference`, `cnt`, `citgrp`, `character`, `word`, `sentence`, `paragraph`, `section`) " +
+					"VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+			stmtRef = con.prepareStatement("INSERT INTO reference " +
+					"(`document`, `refId`, `refPmid`, `refPmcId`, `refMedId`, `refDoi`, `refAuthKey`, `refTitKey`) " +
+					"VALUES(?, ?, ?, ?, ?, ?, ?, ?)");
+
+			//Precompiled patterns to be used in content handler
+			sentWordSplit = Pattern.compile("\\*�[WS]/�");
+			multCitSplit = Pattern.compile("^[\\D&&\\W]?[\\s]*?(\\d+)[\\s]*?[\\D&&\\W]?[\\s]*?[\u2010\u2011\u2012\\u2013\u2212\\u002D\u00AD][\\s]*?[\\D&&\\W]?[\\s]*?(\\d+)[\\s]*?[\\D&&\\W]?$");
+			cleanRefKeys = Pattern.compile("[^\\p{Lower}\\p{Upper}]"); 
+
+			Document doc = new Document();
+			//Parse file
+			try {
+				doc.file = f.getAbsolutePath().replaceFirst(xmlDir.getAbsolutePath() + File.separator, "");
+				handler = new PmcXmlHandler(f, stmtDoc, stmtAuth, stmtCit, stmtRef, multCitSplit, sentWordSplit, cleanRefKeys, dtdDir.getAbsolutePath(), doc);
+				parser.parse(new InputSource(new StringReader(xml)), handler);
+			} 
+			//Errors during parsing or moving files, counted as a failed task once the statements are closed
+			catch (Exception eParse) {
+				logger.error("Error: " + eParse.getMessage() + ": "+f);
 				fous.close();
-				searchTerm = null;
-				matcher = null;
-				xml = null;
-				factory = null;
-				parser = null;
-				
-			} else { // no body
-				logger.warn("{} has no body ot too many. Skipping.", f.getAbsolutePath());
+				fis.close();
+				throw eParse;
 			}
-			splitCont = null;
-			fis.close();;
-			fisBuf = null;
-		} catch (Exception e) {
-			e.printStackTrace();
+			finally {
+				try {
+					stmtDoc.close();
+					stmtAuth.close();
+					stmtCit.close();
+					stmtRef.close();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+				handler = null;
+			} //Clear document specific data structures	
+			
+			if (validTypes.contains(doc.type)) {
+				org.apache.lucene.document.Document luceneDoc = new org.apache.lucene.document.Document();
+				luceneDoc.add(new NumericField("pmcId", Store.YES, true).setIntValue(doc.pmcId));
+				luceneDoc.add(new Field("file", filename[1], Store.YES, Index.NO));
+				luceneDoc.add(new Field("title", doc.title, Store.YES, Index.ANALYZED, TermVector.YES));
+				luceneDoc.add(new Field("abstract", doc.abstractText.toString(), Store.YES, Index.ANALYZED, TermVector.YES));
+				luceneDoc.add(new Field("text", contentCleaned.toString(), Store.YES, Index.ANALYZED, TermVector.YES));
+				indexWriter.addDocument(luceneDoc);
+				luceneDoc = null;
+			}
+
+			doc = null;
+			contentCleaned = null;
+			filename = null;
+			txtFile = null;
+			fous.close();
+			searchTerm = null;
+			matcher = null;
+			xml = null;
+			factory = null;
+			parser = null;
+			
+		} else { // no body
+			logger.warn("{} has no body ot too many. Skipping.", f.getAbsolutePath());
 		}
+		splitCont = null;
+		fis.close();
+		fisBuf = null;
 	}
 	
 	private StringBuffer splitWordSentences(String xml) {
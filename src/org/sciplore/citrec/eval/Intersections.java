@@ -20,22 +20,29 @@
 
 package org.sciplore.citrec.eval;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 
 import org.sciplore.citrec.Helper;
+import org.sciplore.citrec.sim.SimilarityWriters;
+import org.sciplore.citrec.sim.TopKStore;
 /**
  * Evaluation utility that performs a set-based comparison of the top-k 
  * documents ranked according to a selected similarity measure.
  * 
+ * The results are read from {@link TopKStore} files in <code>simWriter.dir</code> 
+ * if present for the measure and MeSH Lin, otherwise from the database.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  *
  */
@@ -55,6 +62,8 @@ public class Intersections {
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		
 		PreparedStatement stmtSimMesh = db.prepareStatement("SELECT document2 FROM sim_mesh_lin WHERE document1=? ORDER BY value DESC LIMIT ?");
+		File dir = SimilarityWriters.dir(p);
+		TopKStore meshStore = KendallsTau.open(dir, "sim_mesh_lin");
 		
 		String methods[] = { "amsler", "amsler_rel", "bibco", "bibco_rel", "cocit", "cocit_relative", "context_avg", "context_pow1", "context_pow2", "context_rt2", "context_rt5", "context_rt10", "context_sum", "cpa_2simple_tree", "cpa_5simple_tree", "cpa_10simple_tree", "cpa_pow1", "cpa_pow2", "cpa_rt2", "cpa_rt5", "cpa_rt10", "cpa_simple", "cpa_simple_2tree", "cpa_simple_5tree", "cpa_simple_10tree", "cpa_simple_tree", "cpa_sum", "cpa_tree", "linkthrough", "luceneb_title_abstract", "luceneb_title_abstract_text", "lucene_abstract", "lucene_text", "lucene_title" };
 		int intersections;
@@ -66,15 +75,28 @@ public class Intersections {
 		while (iter <= 10) {
 			while (k > 0) {
 				for (String m : methods) {
+					TopKStore methodStore = KendallsTau.open(dir, "sim_" + m);
 					PreparedStatement stmtSimMethod = db.prepareStatement("SELECT document2 FROM sim_" + m + " WHERE document1=? ORDER BY value DESC LIMIT ?");
-					PreparedStatement stmtDoc = db.prepareStatement("SELECT s.document1 AS id FROM testdocs_maxcocit_" + iter + " m LEFT JOIN sim_" + m + " s ON s.document1=m.id WHERE EXISTS (SELECT 1 FROM sim_mesh_lin WHERE document1=s.document1) GROUP BY s.document1 HAVING COUNT(s.document2) >= ?");
+					PreparedStatement stmtDoc;
+					if (methodStore != null && meshStore != null) {
+						stmtDoc = db.prepareStatement("SELECT id FROM testdocs_maxcocit_" + iter);
+					} else {
+						stmtDoc = db.prepareStatement("SELECT s.document1 AS id FROM testdocs_maxcocit_" + iter + " m LEFT JOIN sim_" + m + " s ON s.document1=m.id WHERE EXISTS (SELECT 1 FROM sim_mesh_lin WHERE document1=s.document1) GROUP BY s.document1 HAVING COUNT(s.document2) >= ?");
+						stmtDoc.setInt(1, k);
+					}
 	//				PreparedStatement stmtDoc = db.prepareStatement("SELECT id FROM testdocs_x_" + k);
 					int docCnt = 0;
 					Vector<Float> results = new Vector<Float>();
-					stmtDoc.setInt(1, k);
 					ResultSet resDoc = stmtDoc.executeQuery();
 				    while (resDoc.next()) {
 				    	doc = resDoc.getInt("id");
+				    	if (methodStore != null && meshStore != null) {
+				    		// same selection as the query on the tables
+				    		int i = methodStore.indexOf(doc);
+				    		if (i < 0 || methodStore.size(i) < k || meshStore.indexOf(doc) < 0) {
+				    			continue;
+				    		}
+				    	}
 			//		for (int doc : docs) {
 				    	if (++docCnt % 100 == 0) {
 				    		System.err.println(docCnt);
@@ -84,21 +106,15 @@ public class Intersections {
 				    	
 		//		    	System.out.println(doc);
 			
-				    	stmtSimMesh.setInt(1, doc);
-				    	stmtSimMesh.setInt(2, k);
-				    	ResultSet rMesh = stmtSimMesh.executeQuery();
 				    	Set<Integer> meshSims = new HashSet<Integer>();
-				    	while (rMesh.next()) {
-				    		meshSims.add(rMesh.getInt("document2"));
+				    	for (int d : top(meshStore, stmtSimMesh, doc, k)) {
+				    		meshSims.add(d);
 				    	}
 	//			    	System.out.println(meshSims);
 						
-				    	stmtSimMethod.setInt(1, doc);
-				    	stmtSimMethod.setInt(2, k);
-				    	ResultSet rMethod = stmtSimMethod.executeQuery();
-				    	while (rMethod.next()) {
-	//			    		System.out.println(rMethod.getInt("document2"));
-				    		if (meshSims.contains(rMethod.getInt("document2"))) {
+				    	for (int d : top(methodStore, stmtSimMethod, doc, k)) {
+	//			    		System.out.println(d);
+				    		if (meshSims.contains(d)) {
 				    			intersections++;
 				    		}
 				    	}
@@ -129,4 +145,28 @@ public class Intersections {
 			iter++;
 		}
 	}
+	
+	/**
+	 * @param store the store to read from or null to use the statement
+	 * @param stmt the statement selecting document2 of a document
+	 * @param doc the pmcId of the document
+	 * @param k the number of results
+	 * @return the pmcIds of the top k documents
+	 * @throws SQLException on database error
+	 */
+	private static int[] top(TopKStore store, PreparedStatement stmt, int doc, int k) throws SQLException {
+		int docs[] = new int[k];
+		if (store != null) {
+			return Arrays.copyOf(docs, store.get(doc, k, docs, null));
+		}
+		stmt.setInt(1, doc);
+		stmt.setInt(2, k);
+		ResultSet res = stmt.executeQuery();
+		int n = 0;
+		while (res.next()) {
+			docs[n++] = res.getInt("document2");
+		}
+		res.close();
+		return Arrays.copyOf(docs, n);
+	}
 }
@@ -20,23 +20,33 @@
 
 package org.sciplore.citrec.eval;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.sciplore.citrec.Helper;
+import org.sciplore.citrec.TaskScheduler;
+import org.sciplore.citrec.sim.SimilarityWriters;
+import org.sciplore.citrec.sim.TopKStore;
 /**
  * Evaluation utility that calculates the Kendall's tau rank correlation coefficient
  * for two set of documents ranked according to two selected similarity measures.
  * 
+ * The results are read from {@link TopKStore} files in <code>simWriter.dir</code> 
+ * if present, otherwise from the database.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  *
  */
 
 public class KendallsTau {
 	private final static int NUM_THREADS = 8;
+	// opened stores by table
+	private final static Map<String, TopKStore> stores = new HashMap<String, TopKStore>();
 	/**
 	 * 
 	 *
@@ -50,7 +60,6 @@ public class KendallsTau {
 		Properties p = Helper.getProperties();
 		
 		Class.forName("com.mysql.jdbc.Driver");
-		Connection dbs[] = new Connection[NUM_THREADS];
 		
 		String collections[] = { "" };
 		byte selections[] = { 0 }; // , 5, 10, 20
@@ -58,17 +67,11 @@ public class KendallsTau {
 //		String methods[] = { "amsler", "amsler_rel", "bibco", "bibco_rel", "cocit", "cocit_relative", "context_avg", "context_pow1", "context_pow2", "context_rt2", "context_rt5", "context_rt10", "context_sum", "cpa_2simple_tree", "cpa_5simple_tree", "cpa_10simple_tree", "cpa_pow1", "cpa_pow2", "cpa_rt2", "cpa_rt5", "cpa_rt10", "cpa_simple", "cpa_simple_2tree", "cpa_simple_5tree", "cpa_simple_10tree", "cpa_simple_tree", "cpa_sum", "cpa_tree", "linkthrough", "luceneb_title_abstract", "luceneb_title_abstract_text", "lucene_abstract", "lucene_text", "lucene_title"};
 		byte initK = 20;
 		byte k = initK;
-		byte i;
-		byte j = 0;
 		int cnt = 0;
 
-		KendallsTauThread t[] = new KendallsTauThread[NUM_THREADS];
-    	
-		for (i = 0; i < NUM_THREADS; i++) {
-			dbs[i] = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
-		}
-
-		i = 0;
+		File dir = SimilarityWriters.dir(p);
+		
+		TaskScheduler<Connection> scheduler = new TaskScheduler<Connection>(NUM_THREADS, TaskScheduler.connections(p));
 		for (byte s : selections) {
 			for (String c : collections) {
 				if (s == 0) {
@@ -76,49 +79,36 @@ public class KendallsTau {
 				} else {
 					k = s;
 				}
+				TopKStore meshStore = open(dir, "sim_" + c + "mesh_lin");
 				while (k > 0) {
 					for (String m : methods) {
 						if (++cnt % 100 == 0) {
 							System.err.println(cnt);
-					    	System.gc();
 						}
-						
-						while (true) {
-							if (i == NUM_THREADS) {
-				    			i = 0;
-				    		}
-	
-				    		if (t[i] == null || !t[i].isAlive()) {
-				    			t[i] = null;
-				    			t[i] = new KendallsTauThread(c, m, k, s, dbs[i]);
-				    			t[i].start();
-				    			i++;
-				    			break;
-				    		}
-				    		if (j == NUM_THREADS) {
-						    	try {
-									Thread.sleep(100);
-								} catch (InterruptedException e) {
-									e.printStackTrace();
-								}
-								j = 0;
-				    		}
-	
-				    		i++;
-				    		j++;
-				    	}
+						scheduler.submit(new KendallsTauTask(c, m, k, s, open(dir, "sim_" + c + m), meshStore));
 					}
 					k--;
 				}
 			}
 		}
-		
-		for (Thread thread : t) {
-			thread.join();
+		scheduler.shutdown();
+		if (scheduler.failures() > 0) {
+			System.err.println(scheduler.failures() + " evaluations failed.");
+			System.exit(-1);
 		}
-		
-		for (Connection d : dbs) {
-			d.close();
-		}		
+	}
+	
+	/**
+	 * @param dir the directory of the store files
+	 * @param table the similarity table
+	 * @return the store of the table or null if there is none
+	 * @throws IOException on I/O error
+	 */
+	static synchronized TopKStore open(File dir, String table) throws IOException {
+		if (!stores.containsKey(table)) {
+			File file = TopKStore.file(dir, table);
+			stores.put(table, file.isFile() ? TopKStore.open(file) : null);
+		}
+		return stores.get(table);
 	}
 }
@@ -0,0 +1,273 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.eval;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import org.sciplore.citrec.TaskScheduler;
+import org.sciplore.citrec.sim.TopKStore;
+
+public class KendallsTauTask implements TaskScheduler.Task<Connection> {
+	private String c;
+	private String m;
+	private byte n;
+	private byte sel;
+	private TopKStore methodStore;
+	private TopKStore meshStore;
+	
+	/**
+	 * @param methodStore the store of the method or null to read the results from the database
+	 * @param meshStore the store of MeSH Lin or null to read the results from the database
+	 */
+	public KendallsTauTask(String collection, String method, byte n, byte sel, TopKStore methodStore, TopKStore meshStore) {
+		this.c = collection;
+		this.m = method;
+		this.n = n;
+		this.sel = sel;
+		this.methodStore = methodStore;
+		this.meshStore = meshStore;
+	}
+	
+	public void run(Connection db) throws SQLException {
+		PreparedStatement stmtSimMesh;
+		PreparedStatement stmtSimMethod;
+    	float tmprank;
+    	int rank;
+    	int cnt;
+		int docCnt;
+		Vector<Float> results;
+		Map<Integer, Ranks> ranks;
+		Map<Double, Set<Integer>> methodDocs;
+		Map<Double, Set<Integer>> meshDocs;
+		Integer docs[];
+		
+		stmtSimMesh = db.prepareStatement("SELECT document2, value FROM sim_" + c + "mesh_lin WHERE document1=? ORDER BY value DESC LIMIT ?");
+		stmtSimMethod = db.prepareStatement("SELECT document2, value FROM " + "sim_" + c + m + " WHERE document1=? ORDER BY value DESC LIMIT ?");
+		docCnt = 0;
+		results = new Vector<Float>();
+		for (int doc : documents(db)) {
+	    	if (++docCnt % 10000 == 0) {
+	    		System.err.println("n: " + n + "\tMethod: " + m + "\tCollection: " + c + "\tSelection: " + sel + "\t" + docCnt);
+	    	}
+	    	
+	    	ranks = new HashMap<Integer, Ranks>();
+	    	
+	    	// Read all results of the method
+	    	methodDocs = read(methodStore, stmtSimMethod, doc);
+
+	    	// Generate ranks for all documents of the method
+	    	tmprank = 1;
+	    	rank = 0;
+	    	cnt = 0;
+	    	for (double k : methodDocs.keySet()) {
+	    		cnt = methodDocs.get(k).size();
+	    		tmprank = rank;
+	    		tmprank += (double)(cnt+1)/2; // calculate mid rank
+	    		for (int d : methodDocs.get(k)) {
+	    			if (!ranks.containsKey(d)) {
+	    				ranks.put(d, new Ranks());
+	    			}
+		    		ranks.get(d).a = tmprank;
+	    		}
+	    		rank = rank + cnt;
+	    	}
+	    	methodDocs.clear();
+	    	methodDocs = null;
+	    	
+	    	meshDocs = read(meshStore, stmtSimMesh, doc);
+	    	
+	    	tmprank = 1;
+	    	rank = 0;
+	    	cnt = 0;
+	    	for (double k : meshDocs.keySet()) {
+	    		cnt = meshDocs.get(k).size();
+	    		tmprank = rank;
+	    		tmprank += (double)(cnt+1)/2; // calculate mid rank
+	    		for (int d : meshDocs.get(k)) {
+	    			if (!ranks.containsKey(d)) {
+	    				ranks.put(d, new Ranks());
+	    			}
+		    		ranks.get(d).b = tmprank;
+	    		}
+	    		rank = rank + cnt;
+	    	}
+	    	meshDocs.clear();
+	    	meshDocs = null;
+	    	
+	    	float p;
+	    	float S = 0;
+	    	int dI;
+	    	int dJ;
+	    	docs = ranks.keySet().toArray(new Integer[0]);
+	    	for (int i = 0; i < docs.length; i++) {
+	    		for (int j = (i + 1); j < docs.length; j++) {
+	    			dI = docs[i];
+	    			dJ = docs[j];
+	    			p = 0;
+	    			if ((ranks.get(dI).a == ranks.get(dJ).a) || (ranks.get(dI).b == ranks.get(dJ).b)) { // Ranks are shared, score is 0
+	    				continue;
+	    			}
+	    			if ((ranks.get(dI).a != 0) && (ranks.get(dI).b != 0) && (ranks.get(dJ).a != 0) && (ranks.get(dJ).b != 0)) { // Case 1
+		    			if ((ranks.get(dI).a < ranks.get(dJ).a) && (ranks.get(dI).b > ranks.get(dJ).b)
+		    					|| (ranks.get(dI).a > ranks.get(dJ).a) && (ranks.get(dI).b < ranks.get(dJ).b)){
+		    				p = 1;
+		    			}
+	    			} else if ((ranks.get(dI).a != 0) && (ranks.get(dJ).a != 0) && ((ranks.get(dI).b != 0) ^ (ranks.get(dJ).b != 0))) { // Case 2 a
+		    			if (((ranks.get(dI).a < ranks.get(dJ).a) && (ranks.get(dI).b == 0))
+		    					|| ((ranks.get(dI).a > ranks.get(dJ).a) && (ranks.get(dJ).b == 0))) {
+		    				p = 1;
+		    			}
+	    			} else if ((ranks.get(dI).b != 0) && (ranks.get(dJ).b != 0) && ((ranks.get(dI).a != 0) ^ (ranks.get(dJ).a != 0))) { // Case 2 b
+		    			if (((ranks.get(dI).b < ranks.get(dJ).b) && (ranks.get(dI).a == 0))
+		    					|| ((ranks.get(dI).b > ranks.get(dJ).b) && (ranks.get(dJ).a == 0))) {
+		    				p = 1;
+		    			}
+	    			} else if (((ranks.get(dI).a != 0) && (ranks.get(dI).b == 0) && (ranks.get(dJ).a == 0) && (ranks.get(dJ).b != 0))
+	    					|| ((ranks.get(dI).a == 0) && (ranks.get(dI).b != 0) && (ranks.get(dJ).a != 0) && (ranks.get(dJ).b == 0))) { // Case 3
+	    				p = 1;
+	    			} else if (((ranks.get(dI).a != 0) && (ranks.get(dJ).a != 0) && (ranks.get(dI).b == 0) && (ranks.get(dJ).b == 0))
+	    					|| ((ranks.get(dI).a == 0) && (ranks.get(dJ).a == 0) && (ranks.get(dI).b != 0) && (ranks.get(dJ).b != 0))) { // Case 4
+	    				p = (float).5;
+	    			}
+	    			S += p;
+	    		}
+	    	}
+	    	ranks.clear();
+	    	ranks = null;
+	    	
+	    	S /= n * ((2 * n) - 1);
+	    	if (S < 0 || S > 1) {
+	    		System.err.println("Komischer Wert!!!");
+	    		System.exit(1);
+	    	}
+	    	S = 1 - S;
+	    	results.add(S);
+	    }
+	    stmtSimMethod.close();
+	    stmtSimMesh.close();
+	    Collections.sort(results);
+	    float res[] = new float[results.size()];
+	    float sum = 0;
+	    int i=0;
+	    for (float r : results) {
+	    	sum += r;
+	    	res[i++] = r;
+	    }
+	    if (i > 0) {
+	    	System.out.println("n: " + n + "\tMethod: " + m + "\tCollection: " + c + "\tSelection: " + sel + "\tDocuments: " + docCnt + "\tMean: " + sum/results.size() + "\tMedian: " + res[(i - 1) / 2]);
+	    } else {
+	    	System.out.println("n: " + n + "\tMethod: " + m + "\tCollection: " + c + "\tSelection: " + sel + "\tDocuments: " + docCnt + "\tNo results!");
+	    }
+	    results.clear();
+	    results = null;
+	}
+	
+	/**
+	 * @return the pmcIds of the documents to evaluate
+	 */
+	private int[] documents(Connection db) throws SQLException {
+		int docs[] = new int[1024];
+		int num = 0;
+		if (sel == 0 && methodStore != null) {
+			for (int i = 0; i < methodStore.numDocuments(); i++) {
+				if (methodStore.size(i) >= n) {
+					if (num == docs.length) {
+						docs = Arrays.copyOf(docs, num * 2);
+					}
+					docs[num++] = methodStore.document(i);
+				}
+			}
+			return Arrays.copyOf(docs, num);
+		}
+		
+		PreparedStatement stmtDoc;
+		if (sel == 0) {
+			stmtDoc = db.prepareStatement("SELECT document1 FROM " + "sim_" + c + m + " GROUP BY document1 HAVING COUNT(document2) >= ?");
+			stmtDoc.setInt(1, n);
+		} else {
+			stmtDoc = db.prepareStatement("SELECT doc FROM docs_" + c + "selection" + sel);
+		}
+		ResultSet resDoc = stmtDoc.executeQuery();
+		while (resDoc.next()) {
+			if (num == docs.length) {
+				docs = Arrays.copyOf(docs, num * 2);
+			}
+			docs[num++] = resDoc.getInt(1);
+		}
+		resDoc.close();
+		stmtDoc.close();
+		return Arrays.copyOf(docs, num);
+	}
+	
+	/**
+	 * Read the top n results of a document grouped by the inverse value for sorting.
+	 *
+	 * @param store the store to read from or null to use the statement
+	 * @param stmt the statement selecting document2 and value of a document
+	 * @param doc the pmcId of the document
+	 */
+	private Map<Double, Set<Integer>> read(TopKStore store, PreparedStatement stmt, int doc) throws SQLException {
+		Map<Double, Set<Integer>> docs = new TreeMap<Double, Set<Integer>>();
+		if (store != null) {
+			int i = store.indexOf(doc);
+			int num = i < 0 ? 0 : Math.min(n, store.size(i));
+			for (int r = 0; r < num; r++) {
+				add(docs, store.entryScore(i, r) * -1, store.entryDocument(i, r));
+			}
+		} else {
+			stmt.setInt(1, doc);
+			stmt.setInt(2, n);
+			ResultSet res = stmt.executeQuery();
+			while (res.next()) {
+				add(docs, res.getDouble("value") * -1, res.getInt("document2"));
+			}
+			res.close();
+		}
+		return docs;
+	}
+	
+	private static void add(Map<Double, Set<Integer>> docs, double value, int doc) {
+		if (!docs.containsKey(value)) {
+			docs.put(value, new HashSet<Integer>());
+		}
+		docs.get(value).add(doc);
+	}
+}
+
+class Ranks {
+	float a = 0;
+	float b = 0;
+
+	public String toString() {
+		return "{" + a + ", " + b + "}";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Calculate Co-citation Proximity Analysis (CPA) similarities between all 
+ * referenced documents, written to <code>sim_cpa_*_all</code>.
+ * 
+ * @see CitationProximityAnalysis
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class AllCitationProximityAnalysis {
+	/**
+	 * Calculate CPA similarities between all referenced documents
+	 *
+	 * @param args
+	 * @throws ClassNotFoundException
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
+		CitationProximityAnalysis.run(true);
+	}
+}
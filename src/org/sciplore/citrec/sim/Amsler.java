@@ -23,19 +23,14 @@ package org.sciplore.citrec.sim;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sciplore.citrec.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-
 /**
  * Calculate the Amsler similarity as described in "Link Information as a 
  * Similarity Measure in Web Classification" by Marco Cristo, Pavel Calado, 
@@ -43,6 +38,19 @@ import com.google.common.collect.Multimap;
  * in Computer Science, 2003, Volume 2857/2003, 43-55, 
  * DOI: 10.1007/978-3-540-39984-1_4 
  * 
+ * The similarity is the sum of Bibliographic Coupling, Co-Citation and Link 
+ * Through from the first to the second document. All three are counted 
+ * directly on the in-memory {@link CitationGraph} in a single pass, so the 
+ * similarity tables of the other measures are not required. Bibliographic 
+ * Coupling and Co-Citation are symmetric and counted once per pair, Link 
+ * Through is counted in both directions and added to the orientation it 
+ * belongs to.
+ * 
+ * <code>sim_amsler_rel</code> is written in the same pass: the similarity 
+ * divided by the number of distinct neighbours (references and citing 
+ * documents) of both documents, the direct citation of the first document 
+ * by the second one counted once.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
 public class Amsler {
@@ -55,142 +63,163 @@ public class Amsler {
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
-		Logger logger = LoggerFactory.getLogger(Amsler.class);
+		final Logger logger = LoggerFactory.getLogger(Amsler.class);
 		Properties p = Helper.getProperties();
-		int intervalSize = 10000; // max number of documents to process in one step.
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
 		
 		// initialize database connections begin
 		Class.forName(p.getProperty("db.driver"));
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 		
-		Statement stmt = db.createStatement();
-		PreparedStatement stmtAmsler = db.prepareStatement("INSERT INTO `similarity_amsler` VALUES(?, ?, ?)");
+		final CitationGraph g = CitationGraph.load(db);
 		
-		// Create the table for the results
-		stmt.execute("DROP TABLE IF EXISTS sim_amsler");
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_amsler` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_amsler` DISABLE KEYS");
+		final SimilarityWriter insAmsler = SimilarityWriters.open(p, db, "sim_amsler", true);
+		final SimilarityWriter insAmslerRel = SimilarityWriters.open(p, db, "sim_amsler_rel", true);
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread counters for the symmetric part and the link through in both directions
+		final ThreadLocal<SparseCounter[]> counters = new ThreadLocal<SparseCounter[]>() {
+			protected SparseCounter[] initialValue() {
+				return new SparseCounter[] { new SparseCounter(g.numDocuments()), new SparseCounter(g.numDocuments()), new SparseCounter(g.numDocuments()) };
+			}
+		};
 		
-		int cnt;
-		ResultSet res;
-		Multimap<Idx, Float> similarities;
-		
-		res = stmt.executeQuery("SELECT MAX(pmcId) FROM document");
-		res.next();
-		int maxId = res.getInt(1);
-		
-		for (int interval = 0; interval < maxId; interval += intervalSize) { // iterate over the batches
-			cnt = 0;
-			// get batch
-			res = stmt.executeQuery("SELECT * FROM similarity_bibco WHERE document1 > " + interval + " AND document1 <= " + (interval + intervalSize));
-			similarities = ArrayListMultimap.create();
-			while(res.next()) {
-		    	if (cnt % 1000 == 0) {
-		    		logger.info("Reading Bibliographic Coupling: {}", cnt);
-		    	}
-		    	similarities.put(new Idx(res.getInt("document1"), res.getInt("document2")), res.getFloat("value"));
-		    	cnt++;
-		    }
-		    res.close();
-		    res = stmt.executeQuery("SELECT * FROM similarity_cocit WHERE document1 > " + interval + " AND document1 <= " + (interval + intervalSize));
-			cnt = 0;
-		    while(res.next()) {
-		    	if (cnt % 100 == 0) {
-		    		logger.info("Reading Co-Citation: {}", cnt);
-		    	}
-		    	similarities.put(new Idx(res.getInt("document1"), res.getInt("document2")), res.getFloat("value"));
-		    	cnt++;
-		    }
-		    res.close();
-		    res = stmt.executeQuery("SELECT * FROM similarity_linkthrough WHERE document1 > " + interval + " AND document1 <= " + (interval + intervalSize));
-			cnt = 0;
-		    while(res.next()) {
-		    	if (cnt % 100 == 0) {
-		    		logger.info("Reading Link Through: {}", cnt);
-		    	}
-		    	similarities.put(new Idx(res.getInt("document1"), res.getInt("document2")), res.getFloat("value"));
-		    	cnt++;
-		    }
-		    res.close();
-		    
-		    cnt = 0;
-		    for (Idx i : similarities.keySet()) { // itertate over the batch
-		    	if (cnt % 1000 == 0) {
-		    		logger.info("Processing record: {}", cnt);
-		    	}
-		    	float value = 0;
-		    	for (Float v : similarities.get(i)) { // aggregate values
-		    		value += v;
-		    	}
-		    	// store aggregated similarity for Amsler
-		    	stmtAmsler.setInt(1, i.document1);
-		    	stmtAmsler.setInt(2, i.document2);
-		    	stmtAmsler.setFloat(3, value);
-		    	stmtAmsler.executeUpdate();
-		    	cnt++;
-		    }
-		    similarities.clear();
-		}
+		BlockTask.run(numThreads, g.numDocuments(), new BlockTask.Body() {
+			public void process(int d1) throws SQLException, IOException {
+				SparseCounter shared = counters.get()[0];
+				SparseCounter forward = counters.get()[1];
+				SparseCounter backward = counters.get()[2];
+				
+				// only the following documents are counted, both orientations of a pair are written together
+				
+				// Bibliographic Coupling: d1 -> x <- d2, the citing documents are sorted
+				for (int i = g.refOffsets[d1]; i < g.refOffsets[d1 + 1]; i++) {
+					int ref = g.refs[i];
+					for (int j = g.citOffsets[ref + 1] - 1; j >= g.citOffsets[ref] && g.cits[j] > d1; j--) {
+						shared.increment(g.cits[j]);
+					}
+				}
+				
+				// Co-Citation: d1 <- x -> d2
+				int ref1 = g.refDocOf(d1);
+				if (ref1 >= 0) {
+					for (int i = g.citOffsets[ref1]; i < g.citOffsets[ref1 + 1]; i++) {
+						int citing = g.cits[i];
+						for (int j = g.refOffsets[citing]; j < g.refOffsets[citing + 1]; j++) {
+							int d2 = g.documentOf(g.refs[j]);
+							if (d2 > d1) {
+								shared.increment(d2);
+							}
+						}
+					}
+				}
+				
+				// Link Through: d1 -> x -> d2
+				for (int i = g.refOffsets[d1]; i < g.refOffsets[d1 + 1]; i++) {
+					int via = g.documentOf(g.refs[i]);
+					if (via < 0) {
+						continue;
+					}
+					for (int j = g.refOffsets[via]; j < g.refOffsets[via + 1]; j++) {
+						int d2 = g.documentOf(g.refs[j]);
+						if (d2 > d1) {
+							forward.increment(d2);
+						}
+					}
+				}
+				
+				// Link Through: d2 -> x -> d1
+				if (ref1 >= 0) {
+					for (int i = g.citOffsets[ref1]; i < g.citOffsets[ref1 + 1]; i++) {
+						int via = g.refDocOf(g.cits[i]);
+						if (via < 0) {
+							continue;
+						}
+						for (int j = g.citOffsets[via + 1] - 1; j >= g.citOffsets[via] && g.cits[j] > d1; j--) {
+							backward.increment(g.cits[j]);
+						}
+					}
+				}
+				
+		    	// store aggregated similarity for Amsler in both orientations
+				synchronized (insAmsler) { // keep the rows of one document together
+					synchronized (insAmslerRel) {
+						for (int n = 0; n < shared.size(); n++) {
+							write(g, d1, shared.index(n), shared, forward, backward, insAmsler, insAmslerRel);
+						}
+						for (int n = 0; n < forward.size(); n++) {
+							int d2 = forward.index(n);
+							if (shared.count(d2) == 0) {
+								write(g, d1, d2, shared, forward, backward, insAmsler, insAmslerRel);
+							}
+						}
+						for (int n = 0; n < backward.size(); n++) {
+							int d2 = backward.index(n);
+							if (shared.count(d2) == 0 && forward.count(d2) == 0) {
+								write(g, d1, d2, shared, forward, backward, insAmsler, insAmslerRel);
+							}
+						}
+					}
+				}
+				shared.clear();
+				forward.clear();
+				backward.clear();
+				int c = cnt.incrementAndGet();
+				if (c % 1000 == 0) {
+					logger.info("{} documents processed.", c);
+				}
+			}
+		});
 	    
-		stmtAmsler.close();
-		stmt.execute("ALTER TABLE `sim_amsler` ENABLE KEYS");
-		stmt.close();
-	}
-}
-
-/**
- * Class for indizes used for the Multimap holding similarities.
- */
-class Idx implements Comparable<Idx> {
-	protected Integer document1;
-	protected Integer document2;
-	
-	public Idx (Integer d1, Integer d2) {
-		document1 = d1;
-		document2 = d2;
+		insAmsler.close();
+		insAmslerRel.close();
+		db.close();
 	}
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	/**
+	 * Write the similarities of a pair in both orientations, orientations 
+	 * without any common neighbour are skipped.
+	 *
+	 * @param d1 the first document
+	 * @param d2 a following document
+	 * @param shared Bibliographic Coupling and Co-Citation by following document
+	 * @param forward Link Through d1 -> x -> d2 by following document
+	 * @param backward Link Through d2 -> x -> d1 by following document
 	 */
-	public int compareTo(Idx x) {
-		if (document1.compareTo(x.document1) == 0) {
-			return document2.compareTo(x.document2);
-		} else {
-			return document1.compareTo(x.document1);
+	private static void write(CitationGraph g, int d1, int d2, SparseCounter shared, SparseCounter forward, SparseCounter backward, SimilarityWriter insAmsler, SimilarityWriter insAmslerRel) throws SQLException, IOException {
+		int value = shared.count(d2) + forward.count(d2);
+		if (value > 0) {
+			insAmsler.add(g.documentId(d1), g.documentId(d2), value);
+			insAmslerRel.add(g.documentId(d1), g.documentId(d2), relative(g, d1, d2, value));
 		}
-	}
-	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#equals(java.lang.Object)
-	 */
-	public boolean equals(Object o) {
-		if (o instanceof Idx) {
-			return compareTo((Idx)o) == 0;
+		value = shared.count(d2) + backward.count(d2);
+		if (value > 0) {
+			insAmsler.add(g.documentId(d2), g.documentId(d1), value);
+			insAmslerRel.add(g.documentId(d2), g.documentId(d1), relative(g, d2, d1, value));
 		}
-		return false;
 	}
 	
-	// required for Multimap
-	/* (non-Javadoc)
-	 * @see java.lang.Object#hashCode()
+	/**
+	 * @param value the similarity of d1 to d2
+	 * @return the similarity divided by the number of distinct neighbours of both documents
 	 */
-	public int hashCode() {
-		return document1.hashCode()+document2.hashCode();
+	private static double relative(CitationGraph g, int d1, int d2, int value) {
+		int union = degree(g, d1) + degree(g, d2) - value;
+		int ref1 = g.refDocOf(d1);
+		if (ref1 >= 0 && g.references(d2, ref1)) {
+			union--;
+		}
+		if (union <= 0) {
+			throw new IllegalStateException("No neighbours for the similarity " + value + " of " + g.documentId(d1) + " and " + g.documentId(d2) + ".");
+		}
+		return (double)value / union;
 	}
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#toString()
+	/**
+	 * @return the number of references of a document plus the number of citations to it
 	 */
-	public String toString() {
-		return "{" + document1 + "," + document2 + "}";
+	private static int degree(CitationGraph g, int doc) {
+		int ref = g.refDocOf(doc);
+		return g.numReferences(doc) + (ref >= 0 ? g.numCitations(ref) : 0);
 	}
 }
-
@@ -23,11 +23,9 @@ package org.sciplore.citrec.sim;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sciplore.citrec.Helper;
 import org.slf4j.Logger;
@@ -36,6 +34,16 @@ import org.slf4j.LoggerFactory;
 /**
  * Calculate similarities using Bibliographic Coupling
  * 
+ * The couplings are the product of the reference matrix with its transpose 
+ * computed on the in-memory {@link CitationGraph}. The documents are split 
+ * into blocks that are processed in parallel by <code>numThreads</code> 
+ * threads. As the measure is symmetric, only the couplings with following 
+ * documents are counted and written in both orientations.
+ * 
+ * <code>sim_bibco_rel</code> is written in the same pass: the number of 
+ * shared references divided by the size of the union of the references of 
+ * both documents (including unresolved ones).
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
 public class BibliographicCoupling {
@@ -48,8 +56,9 @@ public class BibliographicCoupling {
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
-		Logger logger = LoggerFactory.getLogger(BibliographicCoupling.class);
+		final Logger logger = LoggerFactory.getLogger(BibliographicCoupling.class);
 		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
 
 		
 		// initialize database connections begin
@@ -57,42 +66,55 @@ public class BibliographicCoupling {
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 				
-		Statement stmt = db.createStatement();
-		// SQL statement for calculating all couplings for one document
-		PreparedStatement stmtBibCo = db.prepareStatement("INSERT INTO similarity_bibco " +
-				"SELECT r1.document AS d1, r2.document AS d2, COUNT(DISTINCT r2.refDoc) AS strength " +
-				"  FROM reference r1 " +
-				"LEFT JOIN reference r2 " +
-				"  ON r2.refDoc = r1.refDoc " +
-				"WHERE r1.document = ? " +
-				"  AND r1.document != r2.document " +
-				"  AND r2.refDoc IS NOT NULL " +
-				"  GROUP BY r2.document");
-		
-		stmt.execute("DROP TABLE IF EXISTS sim_bibco");
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_bibco` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_bibco` DISABLE KEYS");
-		ResultSet resDoc = stmt.executeQuery("SELECT DISTINCT pmcId FROM document");
+		final CitationGraph g = CitationGraph.load(db);
 		
-		int cnt = 0;
+		final SimilarityWriter insBibCo = SimilarityWriters.open(p, db, "sim_bibco", true);
+		final SimilarityWriter insBibCoRel = SimilarityWriters.open(p, db, "sim_bibco_rel", true);
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread counters for the shared references
+		final ThreadLocal<SparseCounter> counters = new ThreadLocal<SparseCounter>() {
+			protected SparseCounter initialValue() {
+				return new SparseCounter(g.numDocuments());
+			}
+		};
 		
-	    while(resDoc.next()) { // iterate over all documents
-	    	if(++cnt % 1000 == 0) {
-	    		logger.info("{} documents processed.", cnt);
-	    	}
-			stmtBibCo.setInt(1, resDoc.getInt("pmcId"));
-			stmtBibCo.executeUpdate(); // Calculate all couplings for one document and store to database
-	    }
-	    resDoc.close();
-		stmt.execute("ALTER TABLE `sim_bibco` ENABLE KEYS");
-		stmt.close();
-		stmtBibCo.close();
+		// A*A^T over the reference matrix, one row per document
+		BlockTask.run(numThreads, g.numDocuments(), new BlockTask.Body() {
+			public void process(int d1) throws SQLException, IOException {
+				SparseCounter shared = counters.get();
+		    	// count the references shared with the following documents, the citing documents are sorted
+		    	for (int i = g.refOffsets[d1]; i < g.refOffsets[d1 + 1]; i++) {
+		    		int ref = g.refs[i];
+		    		for (int j = g.citOffsets[ref + 1] - 1; j >= g.citOffsets[ref] && g.cits[j] > d1; j--) {
+		    			shared.increment(g.cits[j]);
+		    		}
+		    	}
+		    	// the measure is symmetric, write both orientations
+		    	synchronized (insBibCo) {
+			    	for (int n = 0; n < shared.size(); n++) {
+			    		int d2 = shared.index(n);
+			    		insBibCo.add(g.documentId(d1), g.documentId(d2), shared.count(d2));
+			    		insBibCo.add(g.documentId(d2), g.documentId(d1), shared.count(d2));
+			    	}
+		    	}
+		    	synchronized (insBibCoRel) {
+			    	for (int n = 0; n < shared.size(); n++) {
+			    		int d2 = shared.index(n);
+			    		int value = shared.count(d2);
+			    		double rel = (double)value / (g.numReferences(d1) + g.numReferences(d2) - value);
+			    		insBibCoRel.add(g.documentId(d1), g.documentId(d2), rel);
+			    		insBibCoRel.add(g.documentId(d2), g.documentId(d1), rel);
+			    	}
+		    	}
+		    	shared.clear();
+		    	int c = cnt.incrementAndGet();
+		    	if(c % 1000 == 0) {
+		    		logger.info("{} documents processed.", c);
+		    	}
+			}
+		});
+	    insBibCo.close();
+	    insBibCoRel.close();
 		db.close();
 	}
 }
@@ -0,0 +1,83 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes similarities to a binary file instead of the database. Each row 
+ * takes 16 bytes: document1 and document2 as int and the value as double, 
+ * big-endian as written by {@link DataOutputStream}.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class BinarySimilarityWriter extends BufferedSimilarityWriter {
+	private DataOutputStream out;
+
+	/**
+	 * @param file the output file, it is overwritten
+	 * @param batchSize the number of rows after which the buffer is written
+	 * @param flushInterval the time in milliseconds after which pending rows are written, 0 for no limit
+	 * @throws IOException on I/O error
+	 */
+	public BinarySimilarityWriter(File file, int batchSize, long flushInterval) throws IOException {
+		this(file, false, batchSize, flushInterval);
+	}
+
+	/**
+	 * @param file the output file
+	 * @param append whether the rows are appended to an existing file, otherwise it is overwritten
+	 * @param batchSize the number of rows after which the buffer is written
+	 * @param flushInterval the time in milliseconds after which pending rows are written, 0 for no limit
+	 * @throws IOException on I/O error
+	 */
+	public BinarySimilarityWriter(File file, boolean append, int batchSize, long flushInterval) throws IOException {
+		super(batchSize, flushInterval);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 1 << 16));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#buffer(int, int, double)
+	 */
+	protected void buffer(int document1, int document2, double value) throws IOException {
+		out.writeInt(document1);
+		out.writeInt(document2);
+		out.writeDouble(value);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#write()
+	 */
+	protected void write() throws IOException {
+		out.flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#release()
+	 */
+	protected void release() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that processes a range of dense indexes (documents,
+ * referenced documents, ...) in parallel. The range is split in halves until
+ * the blocks are small enough, idle workers steal the remaining blocks.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class BlockTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Work done for a single index.
+	 */
+	public interface Body {
+		/**
+		 * @param i the index to process
+		 * @throws SQLException on database error
+		 * @throws IOException on I/O error
+		 */
+		void process(int i) throws SQLException, IOException;
+	}
+
+	private final Body body;
+	private final int from;
+	private final int to;
+	private final int blockSize;
+
+	private BlockTask(Body body, int from, int to, int blockSize) {
+		this.body = body;
+		this.from = from;
+		this.to = to;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Process the indexes <code>0</code> to <code>size - 1</code>.
+	 *
+	 * @param numThreads the number of worker threads
+	 * @param size the number of indexes
+	 * @param body the work done for each index
+	 * @throws SQLException if the body threw a SQLException
+	 * @throws IOException if the body threw an IOException
+	 */
+	public static void run(int numThreads, int size, Body body) throws SQLException, IOException {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, numThreads));
+		try {
+			pool.invoke(new BlockTask(body, 0, size, Math.max(1, size / (pool.getParallelism() * 64))));
+		} catch (BodyException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException)e.getCause();
+			}
+			throw (IOException)e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.RecursiveAction#compute()
+	 */
+	protected void compute() {
+		if (to - from > blockSize) {
+			int mid = (from + to) >>> 1;
+			invokeAll(new BlockTask(body, from, mid, blockSize), new BlockTask(body, mid, to, blockSize));
+			return;
+		}
+		try {
+			for (int i = from; i < to; i++) {
+				body.process(i);
+			}
+		} catch (SQLException e) {
+			throw new BodyException(e);
+		} catch (IOException e) {
+			throw new BodyException(e);
+		}
+	}
+
+	/**
+	 * Carries checked exceptions of the body through the pool.
+	 */
+	private static class BodyException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BodyException(Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the similarity writers that buffer rows and write them when 
+ * a number of rows is pending or some time has passed since the last write.
+ * 
+ * The time limit is enforced by a shared background thread, so rows are 
+ * written even if no further rows are added. An error of a background write 
+ * is thrown by the next call to the writer.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public abstract class BufferedSimilarityWriter implements SimilarityWriter {
+	private static ScheduledExecutorService timer;
+	
+	private final int batchSize;
+	private final long flushInterval;
+	private int pending = 0;
+	private long lastFlush = System.currentTimeMillis();
+	private ScheduledFuture<?> timedFlush;
+	private Exception failure;
+	
+	/**
+	 * @param batchSize the number of pending rows that triggers a write
+	 * @param flushInterval the time in milliseconds after which pending rows are written, 0 for no limit
+	 */
+	protected BufferedSimilarityWriter(int batchSize, long flushInterval) {
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		if (flushInterval > 0) {
+			timedFlush = timer().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					timedFlush();
+				}
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * @return the thread writing the rows of all writers on time
+	 */
+	private static synchronized ScheduledExecutorService timer() {
+		if (timer == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "SimilarityWriter flush");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			timer = executor;
+		}
+		return timer;
+	}
+	
+	/**
+	 * Buffer a row.
+	 */
+	protected abstract void buffer(int document1, int document2, double value) throws SQLException, IOException;
+	
+	/**
+	 * Write the buffered rows.
+	 */
+	protected abstract void write() throws SQLException, IOException;
+	
+	/**
+	 * Release the resources of the writer, all rows are written already.
+	 */
+	protected abstract void release() throws SQLException, IOException;
+	
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.SimilarityWriter#add(int, int, double)
+	 */
+	public synchronized void add(int document1, int document2, double value) throws SQLException, IOException {
+		rethrow();
+		buffer(document1, document2, value);
+		if (++pending >= batchSize) {
+			flush();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.SimilarityWriter#flush()
+	 */
+	public synchronized void flush() throws SQLException, IOException {
+		rethrow();
+		if (pending > 0) {
+			write();
+			pending = 0;
+		}
+		lastFlush = System.currentTimeMillis();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.SimilarityWriter#close()
+	 */
+	public synchronized void close() throws SQLException, IOException {
+		if (timedFlush != null) {
+			timedFlush.cancel(false);
+			timedFlush = null;
+		}
+		flush();
+		release();
+	}
+	
+	/**
+	 * Write the pending rows if the last write is at least the flush 
+	 * interval ago, called by the timer.
+	 */
+	private synchronized void timedFlush() {
+		if (timedFlush == null || failure != null || System.currentTimeMillis() - lastFlush < flushInterval) {
+			return;
+		}
+		try {
+			flush();
+		} catch (Exception e) {
+			failure = e;
+		}
+	}
+	
+	/**
+	 * Throw the error of a background write.
+	 */
+	private void rethrow() throws SQLException, IOException {
+		if (failure instanceof SQLException) {
+			throw new SQLException("Timed flush failed.", failure);
+		} else if (failure instanceof IOException) {
+			throw new IOException("Timed flush failed.", failure);
+		} else if (failure != null) {
+			throw new RuntimeException("Timed flush failed.", failure);
+		}
+	}
+}
@@ -0,0 +1,433 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory citation graph used by all citation-based similarity measures.
+ *
+ * The tables <code>document</code>, <code>refdoc_id</code> and
+ * <code>reference</code> are read once. Documents of the collection and
+ * referenced documents (refDoc) get dense indexes. The citing-&gt;cited and
+ * cited-&gt;citing adjacency is stored in compressed sparse row (CSR) format:
+ * the neighbours of node <code>i</code> are the entries
+ * <code>[offsets[i], offsets[i+1])</code> of the target array, sorted
+ * ascending and free of duplicates.
+ *
+ * A referenced document is linked to a document of the collection if its
+ * PubMed id matches the one of the document. All refDocs linked to the same
+ * document are merged into one node with the smallest of their ids, so the
+ * document is cited by every document citing one of them. The other ids
+ * are kept as aliases of the node.
+ *
+ * The number of rows in <code>reference</code> per document (including
+ * unresolved references) and per refDoc are kept for the normalized
+ * measures, they count duplicates unlike the degrees of the adjacency.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class CitationGraph {
+	private static Logger logger = LoggerFactory.getLogger(CitationGraph.class);
+
+	// pmcIds of the documents of the collection, sorted ascending
+	final int[] docIds;
+	// ids of the referenced documents, sorted ascending
+	final int[] refDocIds;
+	// merged refDoc ids packed with their refDoc index, sorted ascending
+	final long[] aliases;
+	// refDoc index of a document of the collection or -1
+	final int[] docRefDoc;
+	// document index of a refDoc or -1
+	final int[] refDocDoc;
+	// citing -> cited (document index -> refDoc indexes)
+	final int[] refOffsets;
+	final int[] refs;
+	// cited -> citing (refDoc index -> document indexes)
+	final int[] citOffsets;
+	final int[] cits;
+	// rows of reference per document and per refDoc
+	final int[] refCounts;
+	final int[] citCounts;
+
+	private CitationGraph(int[] docIds, int[] refDocIds, long[] aliases, int[] docRefDoc, int[] refDocDoc,
+			int[] refOffsets, int[] refs, int[] citOffsets, int[] cits, int[] refCounts, int[] citCounts) {
+		this.docIds = docIds;
+		this.refDocIds = refDocIds;
+		this.aliases = aliases;
+		this.docRefDoc = docRefDoc;
+		this.refDocDoc = refDocDoc;
+		this.refOffsets = refOffsets;
+		this.refs = refs;
+		this.citOffsets = citOffsets;
+		this.cits = cits;
+		this.refCounts = refCounts;
+		this.citCounts = citCounts;
+	}
+
+	/**
+	 * Read the citation graph from the database.
+	 *
+	 * @param db the database connection
+	 * @return the citation graph
+	 * @throws SQLException on database error
+	 */
+	public static CitationGraph load(Connection db) throws SQLException {
+		Statement stmt = db.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(Integer.MIN_VALUE); // stream the results instead of buffering them in the driver
+		ResultSet res;
+		int n;
+
+		// documents of the collection begin
+		long docs[] = new long[1 << 16];
+		n = 0;
+		res = stmt.executeQuery("SELECT pmcId, pmId FROM document");
+		while (res.next()) {
+			if (n == docs.length) {
+				docs = Arrays.copyOf(docs, n * 2);
+			}
+			docs[n++] = pack(res.getInt("pmcId"), res.getInt("pmId"));
+		}
+		res.close();
+		Arrays.sort(docs, 0, n);
+
+		int numDocs = 0;
+		int numPmIds = 0;
+		int docIds[] = new int[n];
+		long pmIds[] = new long[n]; // pmId -> document index
+		for (int i = 0; i < n; i++) {
+			if (numDocs == 0 || high(docs[i]) != docIds[numDocs - 1]) {
+				docIds[numDocs] = high(docs[i]);
+				if (low(docs[i]) > 0) {
+					pmIds[numPmIds++] = pack(low(docs[i]), numDocs);
+				}
+				numDocs++;
+			}
+		}
+		docs = null;
+		docIds = Arrays.copyOf(docIds, numDocs);
+		pmIds = Arrays.copyOf(pmIds, numPmIds);
+		Arrays.sort(pmIds);
+		logger.info("{} documents read.", numDocs);
+		// documents of the collection end
+
+		// references begin
+		long edges[] = new long[1 << 20];
+		int refDocs[] = new int[1 << 20];
+		int refCounts[] = new int[numDocs];
+		n = 0;
+		res = stmt.executeQuery("SELECT document, refDoc FROM reference");
+		while (res.next()) {
+			int doc = Arrays.binarySearch(docIds, res.getInt("document"));
+			if (doc < 0) {
+				continue;
+			}
+			refCounts[doc]++;
+			int refDoc = res.getInt("refDoc");
+			if (res.wasNull()) { // unresolved reference
+				continue;
+			}
+			if (n == edges.length) {
+				edges = Arrays.copyOf(edges, n * 2);
+				refDocs = Arrays.copyOf(refDocs, n * 2);
+			}
+			refDocs[n] = refDoc;
+			edges[n] = pack(doc, refDocs[n]);
+			n++;
+		}
+		res.close();
+
+		Arrays.sort(refDocs, 0, n);
+		int numRefDocs = 0;
+		for (int i = 0; i < n; i++) {
+			if (numRefDocs == 0 || refDocs[i] != refDocs[numRefDocs - 1]) {
+				refDocs[numRefDocs++] = refDocs[i];
+			}
+		}
+		int refDocIds[] = Arrays.copyOf(refDocs, numRefDocs);
+		refDocs = null;
+
+		// replace refDoc ids by their indexes
+		for (int i = 0; i < n; i++) {
+			edges[i] = pack(high(edges[i]), Arrays.binarySearch(refDocIds, low(edges[i])));
+		}
+		logger.info("{} references to {} documents read.", n, numRefDocs);
+		// references end
+
+		// link referenced documents to the collection begin
+		// the document of a refDoc, the one with the smallest pmcId if several match
+		int linked[] = new int[numRefDocs];
+		Arrays.fill(linked, -1);
+		res = stmt.executeQuery("SELECT docId, auxId FROM refdoc_id WHERE type='pm'");
+		while (res.next()) {
+			int ref = Arrays.binarySearch(refDocIds, res.getInt("docId"));
+			if (ref < 0) {
+				continue;
+			}
+			int pmId;
+			try {
+				pmId = Integer.parseInt(res.getString("auxId").trim());
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			int doc = lookup(pmIds, pmId);
+			if (doc >= 0 && (linked[ref] == -1 || doc < linked[ref])) {
+				linked[ref] = doc;
+			}
+		}
+		res.close();
+		stmt.close();
+		pmIds = null;
+
+		// all refDocs of a document are merged into the node of the one with the smallest id
+		int docRefDoc[] = new int[numDocs];
+		Arrays.fill(docRefDoc, -1);
+		int node[] = new int[numRefDocs];
+		int nodeIds[] = new int[numRefDocs];
+		int refDocDoc[] = new int[numRefDocs];
+		long aliases[] = new long[numRefDocs]; // merged refDoc id -> node
+		int numNodes = 0;
+		int numAliases = 0;
+		for (int ref = 0; ref < numRefDocs; ref++) {
+			int doc = linked[ref];
+			if (doc >= 0 && docRefDoc[doc] >= 0) {
+				node[ref] = docRefDoc[doc];
+				aliases[numAliases++] = pack(refDocIds[ref], node[ref]);
+			} else {
+				node[ref] = numNodes;
+				nodeIds[numNodes] = refDocIds[ref];
+				refDocDoc[numNodes] = doc;
+				if (doc >= 0) {
+					docRefDoc[doc] = numNodes;
+				}
+				numNodes++;
+			}
+		}
+		refDocIds = Arrays.copyOf(nodeIds, numNodes);
+		refDocDoc = Arrays.copyOf(refDocDoc, numNodes);
+		aliases = Arrays.copyOf(aliases, numAliases);
+		int citCounts[] = new int[numNodes];
+		for (int i = 0; i < n; i++) {
+			edges[i] = pack(high(edges[i]), node[low(edges[i])]);
+			citCounts[low(edges[i])]++;
+		}
+		if (numAliases > 0) {
+			logger.info("{} referenced documents merged with another one of the same document.", numAliases);
+		}
+		numRefDocs = numNodes;
+		nodeIds = null;
+		linked = null;
+		node = null;
+		// link referenced documents to the collection end
+
+		// build adjacency begin
+		Arrays.sort(edges, 0, n);
+		int numEdges = dedup(edges, n);
+		int refOffsets[] = new int[numDocs + 1];
+		int refs[] = new int[numEdges];
+		for (int i = 0; i < numEdges; i++) {
+			refOffsets[high(edges[i]) + 1]++;
+			refs[i] = low(edges[i]);
+		}
+
+		for (int i = 0; i < numEdges; i++) {
+			edges[i] = pack(low(edges[i]), high(edges[i]));
+		}
+		Arrays.sort(edges, 0, numEdges);
+		int citOffsets[] = new int[numRefDocs + 1];
+		int cits[] = new int[numEdges];
+		for (int i = 0; i < numEdges; i++) {
+			citOffsets[high(edges[i]) + 1]++;
+			cits[i] = low(edges[i]);
+		}
+		edges = null;
+
+		for (int i = 0; i < numDocs; i++) {
+			refOffsets[i + 1] += refOffsets[i];
+		}
+		for (int i = 0; i < numRefDocs; i++) {
+			citOffsets[i + 1] += citOffsets[i];
+		}
+		// build adjacency end
+		logger.info("Citation graph with {} edges built.", numEdges);
+
+		return new CitationGraph(docIds, refDocIds, aliases, docRefDoc, refDocDoc, refOffsets, refs, citOffsets, cits, refCounts, citCounts);
+	}
+
+	/**
+	 * @return the number of documents in the collection
+	 */
+	public int numDocuments() {
+		return docIds.length;
+	}
+
+	/**
+	 * @return the number of referenced documents
+	 */
+	public int numRefDocs() {
+		return refDocIds.length;
+	}
+
+	/**
+	 * @param doc the document index
+	 * @return the pmcId of the document
+	 */
+	public int documentId(int doc) {
+		return docIds[doc];
+	}
+
+	/**
+	 * @param ref the refDoc index
+	 * @return the id of the referenced document
+	 */
+	public int refDocId(int ref) {
+		return refDocIds[ref];
+	}
+
+	/**
+	 * @param pmcId the pmcId of a document
+	 * @return the document index or a negative value if the document is unknown
+	 */
+	public int documentIndex(int pmcId) {
+		return Arrays.binarySearch(docIds, pmcId);
+	}
+
+	/**
+	 * @param refDoc the id of a referenced document, merged ids included
+	 * @return the refDoc index or a negative value if the document is never referenced
+	 */
+	public int refDocIndex(int refDoc) {
+		int ref = Arrays.binarySearch(refDocIds, refDoc);
+		if (ref < 0) {
+			int alias = lookup(aliases, refDoc);
+			if (alias >= 0) {
+				return alias;
+			}
+		}
+		return ref;
+	}
+
+	/**
+	 * @param doc the document index
+	 * @return the refDoc index of the document or -1 if it is never referenced
+	 */
+	public int refDocOf(int doc) {
+		return docRefDoc[doc];
+	}
+
+	/**
+	 * @param ref the refDoc index
+	 * @return the document index of the referenced document or -1 if it is not part of the collection
+	 */
+	public int documentOf(int ref) {
+		return refDocDoc[ref];
+	}
+
+	/**
+	 * @param doc the document index
+	 * @return the number of distinct documents referenced by the document
+	 */
+	public int outDegree(int doc) {
+		return refOffsets[doc + 1] - refOffsets[doc];
+	}
+
+	/**
+	 * @param ref the refDoc index
+	 * @return the number of documents referencing the document
+	 */
+	public int inDegree(int ref) {
+		return citOffsets[ref + 1] - citOffsets[ref];
+	}
+
+	/**
+	 * @param doc the document index
+	 * @return the number of references of the document including unresolved and duplicate ones
+	 */
+	public int numReferences(int doc) {
+		return refCounts[doc];
+	}
+	
+	/**
+	 * @param ref the refDoc index
+	 * @return the number of references to the document including duplicates
+	 */
+	public int numCitations(int ref) {
+		return citCounts[ref];
+	}
+	
+	/**
+	 * @param doc the index of the citing document
+	 * @param ref the refDoc index
+	 * @return true if the document references the refDoc
+	 */
+	public boolean references(int doc, int ref) {
+		return Arrays.binarySearch(refs, refOffsets[doc], refOffsets[doc + 1], ref) >= 0;
+	}
+	
+	/**
+	 * Find the value stored in the lower half of a sorted array of packed
+	 * longs for the key in the upper half.
+	 */
+	private static int lookup(long a[], int key) {
+		int i = Arrays.binarySearch(a, pack(key, 0));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		if (i < a.length && high(a[i]) == key) {
+			return low(a[i]);
+		}
+		return -1;
+	}
+
+	/**
+	 * Remove duplicates from the first <code>n</code> entries of a sorted array.
+	 *
+	 * @return the number of distinct entries
+	 */
+	private static int dedup(long a[], int n) {
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if (m == 0 || a[i] != a[m - 1]) {
+				a[m++] = a[i];
+			}
+		}
+		return m;
+	}
+
+	private static long pack(int high, int low) {
+		return ((long)high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	private static int high(long l) {
+		return (int)(l >>> 32);
+	}
+
+	private static int low(long l) {
+		return (int)l;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory positions of the in-text citations, aligned with the edges of 
+ * a {@link CitationGraph}.
+ * 
+ * The table <code>citation</code> is read once and joined with 
+ * <code>reference</code> to get the cited refDoc. The citations of the 
+ * edge <code>e</code> (an index into the citing-&gt;cited adjacency of the 
+ * graph) are the entries <code>[offsets[e], offsets[e+1])</code> of the 
+ * position arrays. So the citations of a document are contiguous and 
+ * grouped by the cited document in the order of the adjacency. References 
+ * that are never cited in the text have no entries.
+ * 
+ * Sections are interned, the path of a section id is the list of its 
+ * section numbers, e.g. <code>{1, 2, 3}</code> for <code>1.2.3</code>.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class CitationPositionIndex {
+	private static Logger logger = LoggerFactory.getLogger(CitationPositionIndex.class);
+	
+	final CitationGraph graph;
+	// citations of an edge of the graph
+	final int[] offsets;
+	// positions of the citations as counted by the parser
+	final int[] group;
+	final int[] character;
+	final int[] word;
+	final int[] sentence;
+	final int[] paragraph;
+	final int[] section;
+	// section numbers of an interned section
+	final int[][] sectionPaths;
+	
+	private CitationPositionIndex(CitationGraph graph, int[] offsets, int[] group, int[] character, int[] word,
+			int[] sentence, int[] paragraph, int[] section, int[][] sectionPaths) {
+		this.graph = graph;
+		this.offsets = offsets;
+		this.group = group;
+		this.character = character;
+		this.word = word;
+		this.sentence = sentence;
+		this.paragraph = paragraph;
+		this.section = section;
+		this.sectionPaths = sectionPaths;
+	}
+	
+	/**
+	 * Read the citation positions from the database.
+	 *
+	 * @param db the database connection
+	 * @param g the citation graph
+	 * @return the index
+	 * @throws SQLException on database error
+	 */
+	public static CitationPositionIndex load(Connection db, CitationGraph g) throws SQLException {
+		Statement stmt = db.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(Integer.MIN_VALUE); // stream the results instead of buffering them in the driver
+		ResultSet res = stmt.executeQuery("SELECT c.document, r.refDoc, c.citgrp, c.`character`, c.word, c.sentence, c.paragraph, c.section " +
+				"FROM citation c JOIN reference r ON r.document=c.document AND r.refId=c.reference " +
+				"WHERE r.refDoc IS NOT NULL");
+		
+		Map<String, Integer> sections = new HashMap<String, Integer>();
+		List<int[]> sectionPaths = new ArrayList<int[]>();
+		int n = 0;
+		int edges[] = new int[1 << 20];
+		int rows[][] = new int[6][1 << 20];
+		while (res.next()) {
+			int doc = g.documentIndex(res.getInt(1));
+			int ref = doc < 0 ? -1 : g.refDocIndex(res.getInt(2));
+			int e = ref < 0 ? -1 : edge(g, doc, ref);
+			if (e < 0) {
+				continue;
+			}
+			if (n == edges.length) {
+				edges = Arrays.copyOf(edges, n * 2);
+				for (int f = 0; f < rows.length; f++) {
+					rows[f] = Arrays.copyOf(rows[f], n * 2);
+				}
+			}
+			String sec = res.getString(8);
+			sec = sec == null ? "" : sec.trim();
+			Integer s = sections.get(sec);
+			if (s == null) {
+				s = sectionPaths.size();
+				sections.put(sec, s);
+				sectionPaths.add(path(sec));
+			}
+			edges[n] = e;
+			for (int f = 0; f < 5; f++) {
+				rows[f][n] = res.getInt(3 + f);
+			}
+			rows[5][n] = s;
+			n++;
+		}
+		res.close();
+		stmt.close();
+		
+		// group the citations by edge begin
+		int numEdges = g.refs.length;
+		int offsets[] = new int[numEdges + 1];
+		for (int i = 0; i < n; i++) {
+			offsets[edges[i] + 1]++;
+		}
+		for (int e = 0; e < numEdges; e++) {
+			offsets[e + 1] += offsets[e];
+		}
+		int next[] = Arrays.copyOf(offsets, numEdges);
+		int cols[][] = new int[rows.length][n];
+		for (int i = 0; i < n; i++) {
+			int pos = next[edges[i]]++;
+			for (int f = 0; f < rows.length; f++) {
+				cols[f][pos] = rows[f][i];
+			}
+		}
+		// group the citations by edge end
+		logger.info("{} citations in {} sections read.", n, sectionPaths.size());
+		
+		return new CitationPositionIndex(g, offsets, cols[0], cols[1], cols[2], cols[3], cols[4], cols[5],
+				sectionPaths.toArray(new int[sectionPaths.size()][]));
+	}
+	
+	/**
+	 * @param doc the document index
+	 * @param ref the refDoc index
+	 * @return the edge of the graph from the document to the refDoc or -1 if the document does not reference it
+	 */
+	public int edge(int doc, int ref) {
+		return edge(graph, doc, ref);
+	}
+	
+	private static int edge(CitationGraph g, int doc, int ref) {
+		int e = Arrays.binarySearch(g.refs, g.refOffsets[doc], g.refOffsets[doc + 1], ref);
+		return e < 0 ? -1 : e;
+	}
+	
+	/**
+	 * @param e the edge
+	 * @return the number of in-text citations of the edge
+	 */
+	public int numCitations(int e) {
+		return offsets[e + 1] - offsets[e];
+	}
+	
+	/**
+	 * Distance of two citations in the document tree of sections, 
+	 * paragraphs and sentences: the number of levels below the lowest common 
+	 * ancestor on the longer of both paths. 0 for the same sentence, 1 for 
+	 * the same paragraph, 2 for the same section and more for other sections.
+	 *
+	 * @param c1 the first citation
+	 * @param c2 the second citation
+	 * @return the distance
+	 */
+	public int treeDistance(int c1, int c2) {
+		int p1[] = sectionPaths[section[c1]];
+		int p2[] = sectionPaths[section[c2]];
+		int common = 0;
+		while (common < p1.length && common < p2.length && p1[common] == p2[common]) {
+			common++;
+		}
+		int depth = Math.max(p1.length, p2.length) + 2;
+		if (common == p1.length && common == p2.length) {
+			if (paragraph[c1] == paragraph[c2]) {
+				common++;
+				if (sentence[c1] == sentence[c2]) {
+					common++;
+				}
+			}
+		}
+		return depth - common;
+	}
+	
+	/**
+	 * @return the section numbers of a section like <code>1.2.3</code>
+	 */
+	private static int[] path(String section) {
+		if (section.isEmpty()) {
+			return new int[0];
+		}
+		String parts[] = section.split("\\.");
+		int path[] = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			try {
+				path[i] = Integer.parseInt(parts[i].trim());
+			} catch (NumberFormatException e) {
+				path[i] = -1;
+			}
+		}
+		return path;
+	}
+}
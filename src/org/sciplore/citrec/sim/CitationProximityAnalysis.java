@@ -0,0 +1,225 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sciplore.citrec.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculate Co-citation Proximity Analysis (CPA) similarities
+ * 
+ * Two documents are similar if they are cited close to each other. For each 
+ * document citing both, the proximity of their closest pair of in-text 
+ * citations is determined from the {@link CitationPositionIndex}; the 
+ * similarity is the sum over all co-citing documents. All variants are 
+ * calculated in one parallel pass, partitioned by the first cited document 
+ * like {@link CoCitation}. The measures are symmetric, so each pair is 
+ * calculated once and written in both orientations:
+ * 
+ * <ul>
+ * <li><code>simple</code>: 1 for the same sentence, 1/2 for the same 
+ * paragraph, 1/4 for the same section and 1/8 otherwise</li>
+ * <li><code>tree</code>: 1/2<sup>d</sup> with d the distance in the tree of 
+ * sections, paragraphs and sentences, see 
+ * {@link CitationPositionIndex#treeDistance(int, int)}</li>
+ * <li><code>&lt;a&gt;simple_&lt;b&gt;tree</code>: the weighted mean of 
+ * simple and tree, e.g. <code>2simple_tree</code> is (2 simple + tree) / 3</li>
+ * <li><code>powX</code>: 1/(1+d)<sup>X</sup> with d the distance in words</li>
+ * <li><code>rtX</code>: 1/(1+d)<sup>1/X</sup>, the X-th root</li>
+ * <li><code>sum</code>: 1/(1+d) summed over all pairs of citations instead 
+ * of the closest one</li>
+ * </ul>
+ * 
+ * Only references with in-text citations are considered. The tables 
+ * <code>sim_cpa_*</code> contain documents of the collection (pmcIds), 
+ * {@link AllCitationProximityAnalysis} writes <code>sim_cpa_*_all</code> 
+ * with all referenced documents.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class CitationProximityAnalysis {
+	// accumulated measures
+	private static final int SIMPLE = 0;
+	private static final int TREE = 1;
+	private static final int POW1 = 2;
+	private static final int POW2 = 3;
+	private static final int RT2 = 4;
+	private static final int RT5 = 5;
+	private static final int RT10 = 6;
+	private static final int SUM = 7;
+	private static final int NUM_MEASURES = 8;
+	
+	/**
+	 * Names of the variants in the order of the output tables.
+	 */
+	static final String VARIANTS[] = { "simple", "tree", "simple_tree", "2simple_tree", "5simple_tree", "10simple_tree", "simple_2tree", "simple_5tree", "simple_10tree", "pow1", "pow2", "rt2", "rt5", "rt10", "sum" };
+	// weights of simple and tree of the variants, 0 for the accumulated measures
+	private static final int SIMPLE_WEIGHTS[] = { 0, 0, 1, 2, 5, 10, 1, 1, 1, 0, 0, 0, 0, 0, 0 };
+	private static final int TREE_WEIGHTS[] = { 0, 0, 1, 1, 1, 1, 2, 5, 10, 0, 0, 0, 0, 0, 0 };
+	private static final int MEASURES[] = { SIMPLE, TREE, -1, -1, -1, -1, -1, -1, -1, POW1, POW2, RT2, RT5, RT10, SUM };
+	
+	/**
+	 * Calculate CPA similarities between documents of the collection
+	 *
+	 * @param args
+	 * @throws ClassNotFoundException
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
+		run(false);
+	}
+	
+	/**
+	 * Calculate CPA similarities.
+	 *
+	 * @param all true for all referenced documents, false for documents of the collection only
+	 * @throws ClassNotFoundException if the database driver is missing
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	static void run(final boolean all) throws ClassNotFoundException, SQLException, IOException {
+		final Logger logger = LoggerFactory.getLogger(CitationProximityAnalysis.class);
+		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
+		
+		// initialize database connections begin
+		Class.forName(p.getProperty("db.driver"));
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
+		// initialize database connections end
+		
+		final CitationGraph g = CitationGraph.load(db);
+		final CitationPositionIndex idx = CitationPositionIndex.load(db, g);
+		
+		final SimilarityWriter ins[] = new SimilarityWriter[VARIANTS.length];
+		for (int v = 0; v < VARIANTS.length; v++) {
+			ins[v] = SimilarityWriters.open(p, db, "sim_cpa_" + VARIANTS[v] + (all ? "_all" : ""), true);
+		}
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread accumulated measures of the co-cited documents
+		final ThreadLocal<SparseAccumulator> scratch = new ThreadLocal<SparseAccumulator>() {
+			protected SparseAccumulator initialValue() {
+				return new SparseAccumulator(g.numRefDocs(), NUM_MEASURES);
+			}
+		};
+		
+		BlockTask.run(numThreads, g.numRefDocs(), new BlockTask.Body() {
+			public void process(int ref1) throws SQLException, IOException {
+				if (all || g.documentOf(ref1) >= 0) {
+					SparseAccumulator s = scratch.get();
+					for (int i = g.citOffsets[ref1]; i < g.citOffsets[ref1 + 1]; i++) {
+						proximities(idx, g.cits[i], ref1, all, s);
+					}
+					write(g, ref1, all, s, ins);
+					s.clear();
+				}
+				int c = cnt.incrementAndGet();
+				if (c % 10000 == 0) {
+					logger.info("{} documents processed.", c);
+				}
+			}
+		});
+		for (int v = 0; v < VARIANTS.length; v++) {
+			ins[v].close();
+		}
+		db.close();
+	}
+	
+	/**
+	 * Add the proximities of a referenced document to the documents cited 
+	 * with it by one citing document.
+	 */
+	private static void proximities(CitationPositionIndex idx, int citing, int ref1, boolean all, SparseAccumulator s) {
+		CitationGraph g = idx.graph;
+		int e1 = idx.edge(citing, ref1);
+		if (e1 < 0 || idx.numCitations(e1) == 0) {
+			return;
+		}
+		// the references are sorted, only the following ones are paired as the measure is symmetric
+		for (int e2 = e1 + 1; e2 < g.refOffsets[citing + 1]; e2++) {
+			int ref2 = g.refs[e2];
+			if (idx.numCitations(e2) == 0 || (!all && g.documentOf(ref2) < 0)) {
+				continue;
+			}
+			int simple = 3; // levels below the sentence: 0 sentence, 1 paragraph, 2 section, 3 document
+			int tree = Integer.MAX_VALUE;
+			int words = Integer.MAX_VALUE;
+			double sum = 0;
+			for (int c1 = idx.offsets[e1]; c1 < idx.offsets[e1 + 1]; c1++) {
+				for (int c2 = idx.offsets[e2]; c2 < idx.offsets[e2 + 1]; c2++) {
+					if (idx.sentence[c1] == idx.sentence[c2]) {
+						simple = 0;
+					} else if (idx.paragraph[c1] == idx.paragraph[c2]) {
+						simple = Math.min(simple, 1);
+					} else if (idx.section[c1] == idx.section[c2]) {
+						simple = Math.min(simple, 2);
+					}
+					tree = Math.min(tree, idx.treeDistance(c1, c2));
+					int d = Math.abs(idx.word[c1] - idx.word[c2]);
+					words = Math.min(words, d);
+					sum += 1d / (1 + d);
+				}
+			}
+			int n = s.touch(ref2);
+			s.add(SIMPLE, n, Math.scalb(1d, -simple));
+			s.add(TREE, n, Math.scalb(1d, -tree));
+			s.add(POW1, n, 1d / (1 + words));
+			s.add(POW2, n, 1d / ((1d + words) * (1d + words)));
+			s.add(RT2, n, 1d / Math.sqrt(1 + words));
+			s.add(RT5, n, 1d / Math.pow(1 + words, 1d / 5));
+			s.add(RT10, n, 1d / Math.pow(1 + words, 1d / 10));
+			s.add(SUM, n, sum);
+		}
+	}
+	
+	/**
+	 * Write the similarities of a referenced document to all variants in 
+	 * both orientations.
+	 */
+	private static void write(CitationGraph g, int ref1, boolean all, SparseAccumulator s, SimilarityWriter ins[]) throws SQLException, IOException {
+		int id1 = all ? g.refDocId(ref1) : g.documentId(g.documentOf(ref1));
+		for (int v = 0; v < VARIANTS.length; v++) {
+			synchronized (ins[v]) {
+				for (int n = 0; n < s.size(); n++) {
+					int ref2 = s.index(n);
+					int id2 = all ? g.refDocId(ref2) : g.documentId(g.documentOf(ref2));
+					double value;
+					if (MEASURES[v] >= 0) {
+						value = s.value(MEASURES[v], n);
+					} else {
+						value = (SIMPLE_WEIGHTS[v] * s.value(SIMPLE, n) + TREE_WEIGHTS[v] * s.value(TREE, n)) 
+								/ (SIMPLE_WEIGHTS[v] + TREE_WEIGHTS[v]);
+					}
+					ins[v].add(id1, id2, value);
+					ins[v].add(id2, id1, value);
+				}
+			}
+		}
+	}
+}
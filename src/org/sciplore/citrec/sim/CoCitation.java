@@ -23,11 +23,9 @@ package org.sciplore.citrec.sim;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sciplore.citrec.Helper;
 import org.slf4j.Logger;
@@ -36,6 +34,18 @@ import org.slf4j.LoggerFactory;
 /**
  * Calculate Co-Citation similarities
  * 
+ * The co-citations are the product of the transposed reference matrix with 
+ * the reference matrix computed on the in-memory {@link CitationGraph}. One 
+ * pass over all referenced documents fills both <code>sim_cocit_all</code> 
+ * (ids of referenced documents) and <code>sim_cocit</code> (pmcIds, only 
+ * documents of the collection). As the measure is symmetric, only the 
+ * co-citations with following referenced documents are counted and 
+ * written in both orientations.
+ * 
+ * <code>sim_cocit_relative</code> is written in the same pass for the 
+ * documents of the collection: the number of co-citing documents divided 
+ * by the size of the union of the citations of both documents.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
 public class CoCitation {
@@ -48,8 +58,9 @@ public class CoCitation {
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
-		Logger logger = LoggerFactory.getLogger(CoCitation.class);
+		final Logger logger = LoggerFactory.getLogger(CoCitation.class);
 		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
 
 		
 		// initialize database connections begin
@@ -57,49 +68,73 @@ public class CoCitation {
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 				
-		Statement stmt = db.createStatement();
-		// Statement to calculate all Co-Citations for one document
-		PreparedStatement stmtcocit = db.prepareStatement("INSERT INTO sim_cocit " +
-				"SELECT d1.pmcId, d2.pmcId, COUNT(DISTINCT r2.document) AS strength " +
-				"FROM document d1 " +
-				"LEFT JOIN refdoc_id ri1 " +
-				"  ON ri1.type='pm' " +
-				"  AND ri1.auxId=CAST(d1.pmId AS CHAR) " +
-				"LEFT JOIN reference r1 " +
-				"  ON r1.refDoc = ri1.docId " +
-				"LEFT JOIN reference r2 " +
-				"  ON r1.document=r2.document " +
-				"  AND r1.refDoc != r2.refDoc " +
-				"LEFT JOIN refdoc_id ri2 " +
-				"  ON ri2.docId=r2.refDoc " +
-				"  AND ri2.type='pm' " +
-				"LEFT JOIN document d2 " +
-				"  ON d2.pmId=ri2.auxId " +
-				"WHERE d1.pmcId = ? " +
-				"  AND d2.pmcId IS NOT NULL " +
-				"GROUP BY r2.refDoc");
-		
-		stmt.execute("DROP TABLE IF EXISTS simi_cocit");
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_cocit` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_cocit` DISABLE KEYS");
-		ResultSet resdoc = stmt.executeQuery("SELECT pmcId FROM document");
+		final CitationGraph g = CitationGraph.load(db);
 		
-		int cnt = 0;
+		final SimilarityWriter inscocit = SimilarityWriters.open(p, db, "sim_cocit", true);
+		final SimilarityWriter inscocitRel = SimilarityWriters.open(p, db, "sim_cocit_relative", true);
+		final SimilarityWriter inscocitAll = SimilarityWriters.open(p, db, "sim_cocit_all", true);
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread counters for the shared citing documents
+		final ThreadLocal<SparseCounter> counters = new ThreadLocal<SparseCounter>() {
+			protected SparseCounter initialValue() {
+				return new SparseCounter(g.numRefDocs());
+			}
+		};
 		
-	    while(resdoc.next()) { // iterate over all documents
-	    	if(++cnt % 1000 == 0) {
-	    		logger.info("{} documents processed.", cnt);
-	    	}
-			stmtcocit.setInt(1, resdoc.getInt("pmcId"));
-			stmtcocit.executeUpdate(); // calculate all Co-Citations for one document and store to database
-	    }
-	    resdoc.close();
-		stmt.execute("ALTER TABLE `sim_cocit` ENABLE KEYS");
+		// A^T*A over the reference matrix, one row per referenced document
+		BlockTask.run(numThreads, g.numRefDocs(), new BlockTask.Body() {
+			public void process(int ref1) throws SQLException, IOException {
+				SparseCounter cocited = counters.get();
+		    	// count the citing documents shared with the following referenced documents, the references are sorted
+		    	for (int i = g.citOffsets[ref1]; i < g.citOffsets[ref1 + 1]; i++) {
+		    		int citing = g.cits[i];
+		    		for (int j = g.refOffsets[citing + 1] - 1; j >= g.refOffsets[citing] && g.refs[j] > ref1; j--) {
+		    			cocited.increment(g.refs[j]);
+		    		}
+		    	}
+		    	// the measure is symmetric, write both orientations
+		    	synchronized (inscocitAll) {
+			    	for (int n = 0; n < cocited.size(); n++) {
+			    		int ref2 = cocited.index(n);
+			    		inscocitAll.add(g.refDocId(ref1), g.refDocId(ref2), cocited.count(ref2));
+			    		inscocitAll.add(g.refDocId(ref2), g.refDocId(ref1), cocited.count(ref2));
+			    	}
+		    	}
+		    	int d1 = g.documentOf(ref1);
+		    	if (d1 >= 0) { // restrict to documents of the collection
+		    		synchronized (inscocit) {
+				    	for (int n = 0; n < cocited.size(); n++) {
+				    		int ref2 = cocited.index(n);
+				    		int d2 = g.documentOf(ref2);
+				    		if (d2 >= 0) {
+				    			inscocit.add(g.documentId(d1), g.documentId(d2), cocited.count(ref2));
+				    			inscocit.add(g.documentId(d2), g.documentId(d1), cocited.count(ref2));
+				    		}
+				    	}
+		    		}
+		    		synchronized (inscocitRel) {
+				    	for (int n = 0; n < cocited.size(); n++) {
+				    		int ref2 = cocited.index(n);
+				    		int d2 = g.documentOf(ref2);
+				    		if (d2 >= 0) {
+				    			int value = cocited.count(ref2);
+				    			double rel = (double)value / (g.numCitations(ref1) + g.numCitations(ref2) - value);
+				    			inscocitRel.add(g.documentId(d1), g.documentId(d2), rel);
+				    			inscocitRel.add(g.documentId(d2), g.documentId(d1), rel);
+				    		}
+				    	}
+		    		}
+		    	}
+		    	cocited.clear();
+		    	int c = cnt.incrementAndGet();
+		    	if(c % 1000 == 0) {
+		    		logger.info("{} documents processed.", c);
+		    	}
+			}
+		});
+	    inscocit.close();
+	    inscocitRel.close();
+	    inscocitAll.close();
+		db.close();
 	}
 }
@@ -0,0 +1,171 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sciplore.citrec.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculate contextual co-citation similarities
+ * 
+ * Like {@link CitationProximityAnalysis} but the distance of two in-text 
+ * citations is measured in citation contexts: the number of citation 
+ * groups between them, 0 if they are cited in the same group. Citations in 
+ * different sentences are at least one context apart. The positions are 
+ * taken from the {@link CitationPositionIndex}. All variants are 
+ * calculated in one parallel pass, each pair once as the measures are 
+ * symmetric:
+ * 
+ * <ul>
+ * <li><code>powX</code>: 1/(1+d)<sup>X</sup> for the closest pair of citations in a co-citing document</li>
+ * <li><code>rtX</code>: 1/(1+d)<sup>1/X</sup>, the X-th root</li>
+ * <li><code>sum</code>: 1/(1+d) summed over all pairs of citations</li>
+ * <li><code>avg</code>: 1/(1+d) averaged over all pairs of citations of a co-citing document</li>
+ * </ul>
+ * 
+ * The values of the co-citing documents are summed and written to 
+ * <code>sim_context_*</code> for the documents of the collection.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class ContextualCocitation {
+	/**
+	 * Names of the variants in the order of the accumulated values.
+	 */
+	static final String VARIANTS[] = { "sum", "pow1", "pow2", "rt2", "rt5", "rt10", "avg" };
+	private static final int SUM = 0;
+	private static final int POW1 = 1;
+	private static final int POW2 = 2;
+	private static final int RT2 = 3;
+	private static final int RT5 = 4;
+	private static final int RT10 = 5;
+	private static final int AVG = 6;
+	
+	/**
+	 * Calculate contextual co-citation similarities
+	 *
+	 * @param args
+	 * @throws ClassNotFoundException
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
+		final Logger logger = LoggerFactory.getLogger(ContextualCocitation.class);
+		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
+		
+		// initialize database connections begin
+		Class.forName(p.getProperty("db.driver"));
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
+		// initialize database connections end
+		
+		final CitationGraph g = CitationGraph.load(db);
+		final CitationPositionIndex idx = CitationPositionIndex.load(db, g);
+		
+		final SimilarityWriter ins[] = new SimilarityWriter[VARIANTS.length];
+		for (int v = 0; v < VARIANTS.length; v++) {
+			ins[v] = SimilarityWriters.open(p, db, "sim_context_" + VARIANTS[v], true);
+		}
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread accumulated values of the co-cited documents
+		final ThreadLocal<SparseAccumulator> scratch = new ThreadLocal<SparseAccumulator>() {
+			protected SparseAccumulator initialValue() {
+				return new SparseAccumulator(g.numRefDocs(), VARIANTS.length);
+			}
+		};
+		
+		BlockTask.run(numThreads, g.numRefDocs(), new BlockTask.Body() {
+			public void process(int ref1) throws SQLException, IOException {
+				int d1 = g.documentOf(ref1);
+				if (d1 >= 0) { // restrict to documents of the collection
+					SparseAccumulator s = scratch.get();
+					for (int i = g.citOffsets[ref1]; i < g.citOffsets[ref1 + 1]; i++) {
+						contexts(idx, g.cits[i], ref1, s);
+					}
+					for (int v = 0; v < VARIANTS.length; v++) {
+						synchronized (ins[v]) { // both orientations of the symmetric measure
+							for (int n = 0; n < s.size(); n++) {
+								int d2 = g.documentOf(s.index(n));
+								ins[v].add(g.documentId(d1), g.documentId(d2), s.value(v, n));
+								ins[v].add(g.documentId(d2), g.documentId(d1), s.value(v, n));
+							}
+						}
+					}
+					s.clear();
+				}
+				int c = cnt.incrementAndGet();
+				if (c % 10000 == 0) {
+					logger.info("{} documents processed.", c);
+				}
+			}
+		});
+		for (int v = 0; v < VARIANTS.length; v++) {
+			ins[v].close();
+		}
+		db.close();
+	}
+	
+	/**
+	 * Add the context weights of a referenced document to the documents of 
+	 * the collection cited with it by one citing document.
+	 */
+	private static void contexts(CitationPositionIndex idx, int citing, int ref1, SparseAccumulator s) {
+		CitationGraph g = idx.graph;
+		int e1 = idx.edge(citing, ref1);
+		if (e1 < 0 || idx.numCitations(e1) == 0) {
+			return;
+		}
+		// the references are sorted, only the following ones are paired as the measure is symmetric
+		for (int e2 = e1 + 1; e2 < g.refOffsets[citing + 1]; e2++) {
+			if (idx.numCitations(e2) == 0 || g.documentOf(g.refs[e2]) < 0) {
+				continue;
+			}
+			int closest = Integer.MAX_VALUE;
+			double sum = 0;
+			for (int c1 = idx.offsets[e1]; c1 < idx.offsets[e1 + 1]; c1++) {
+				for (int c2 = idx.offsets[e2]; c2 < idx.offsets[e2 + 1]; c2++) {
+					int d = Math.abs(idx.group[c1] - idx.group[c2]);
+					if (d == 0 && idx.sentence[c1] != idx.sentence[c2]) {
+						d = 1;
+					}
+					closest = Math.min(closest, d);
+					sum += 1d / (1 + d);
+				}
+			}
+			int n = s.touch(g.refs[e2]);
+			s.add(SUM, n, sum);
+			s.add(POW1, n, 1d / (1 + closest));
+			s.add(POW2, n, 1d / ((1d + closest) * (1d + closest)));
+			s.add(RT2, n, 1d / Math.sqrt(1 + closest));
+			s.add(RT5, n, 1d / Math.pow(1 + closest, 1d / 5));
+			s.add(RT10, n, 1d / Math.pow(1 + closest, 1d / 10));
+			s.add(AVG, n, sum / (idx.numCitations(e1) * idx.numCitations(e2)));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts similarities into a <code>sim_*</code> table using JDBC batches
+ * instead of one round trip per row.
+ * 
+ * With MySQL the connection should be opened with 
+ * <code>rewriteBatchedStatements=true</code>, the driver then sends a 
+ * batch as multi-row inserts.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class JdbcSimilarityWriter extends BufferedSimilarityWriter {
+	private final Connection db;
+	private final String table;
+	private PreparedStatement stmt;
+
+	/**
+	 * @param db the database connection
+	 * @param table the table with the columns document1, document2 and value
+	 * @param replace whether an existing table is dropped, otherwise the rows are appended to it
+	 * @param batchSize the number of rows per batch
+	 * @param flushInterval the time in milliseconds after which pending rows are sent, 0 for no limit
+	 * @throws SQLException on database error
+	 */
+	public JdbcSimilarityWriter(Connection db, String table, boolean replace, int batchSize, long flushInterval) throws SQLException {
+		super(batchSize, flushInterval);
+		this.db = db;
+		this.table = table;
+		SimilarityWriters.createTable(db, table, replace);
+		stmt = db.prepareStatement("INSERT INTO `" + table + "` VALUES(?, ?, ?)");
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#buffer(int, int, double)
+	 */
+	protected void buffer(int document1, int document2, double value) throws SQLException {
+		stmt.setInt(1, document1);
+		stmt.setInt(2, document2);
+		stmt.setDouble(3, value);
+		stmt.addBatch();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#write()
+	 */
+	protected void write() throws SQLException {
+		stmt.executeBatch();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#release()
+	 */
+	protected void release() throws SQLException {
+		stmt.close();
+		SimilarityWriters.enableKeys(db, table);
+	}
+}
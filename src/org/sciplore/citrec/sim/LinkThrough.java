@@ -23,10 +23,7 @@ package org.sciplore.citrec.sim;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Properties;
 
 import org.sciplore.citrec.Helper;
@@ -57,52 +54,35 @@ public class LinkThrough {
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 				
-		Statement stmt = db.createStatement();
-		// statement to calculate all link through similarities for one document
-		PreparedStatement stmtLinks = db.prepareStatement("INSERT INTO similarity_linkthrough " +
-				"SELECT r1.document, d2.pmcId, COUNT(r1.document) " +
-				"  FROM reference r1 " +
-				"LEFT JOIN refdoc_id ri1 " +
-				"  ON ri1.docId=r1.refDoc " +
-				"  AND ri1.type='pm' " +
-				"LEFT JOIN document d1 " +
-				"  ON d1.pmId=ri1.auxId " +
-				"LEFT JOIN reference r2 " +
-				"  ON r2.document=d1.pmcId " +
-				"LEFT JOIN refdoc_id ri2 " +
-				"  ON ri2.docId=r2.refDoc " +
-				"  AND ri2.type='pm' " +
-				"LEFT JOIN document d2 " +
-				"  ON d2.pmId=ri2.auxId " +
-				"WHERE r1.document=? " +
-				"  AND d1.pmcId IS NOT NULL " +
-				"  AND d2.pmcId IS NOT NULL " +
-				"GROUP BY d2.pmcId");
+		CitationGraph g = CitationGraph.load(db);
 		
-//		stmt.execute("DROP TABLE IF EXISTS similarity_linkthrough");
-		stmt.execute("CREATE TABLE IF NOT EXISTS `similarity_linkthrough` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `similarity_linkthrough` DISABLE KEYS");
-		ResultSet resdoc = stmt.executeQuery("SELECT pmcId FROM document");
+		SimilarityWriter insLinks = SimilarityWriters.open(p, db, "similarity_linkthrough", false);
+		SparseCounter links = new SparseCounter(g.numDocuments());
 		
-		int cnt = 0;
-		
-	    while(resdoc.next()) { // iterate over all documents
-        	if(++cnt % 1 == 0) {
-        		logger.info("{} documents processed.", cnt);
+	    for (int d1 = 0; d1 < g.numDocuments(); d1++) { // iterate over all documents
+        	if((d1 + 1) % 1000 == 0) {
+        		logger.info("{} documents processed.", d1 + 1);
+	    	}
+        	// count the paths d1 -> cited document of the collection -> d2
+	    	for (int i = g.refOffsets[d1]; i < g.refOffsets[d1 + 1]; i++) {
+	    		int via = g.documentOf(g.refs[i]);
+	    		if (via < 0) {
+	    			continue;
+	    		}
+	    		for (int j = g.refOffsets[via]; j < g.refOffsets[via + 1]; j++) {
+	    			int d2 = g.documentOf(g.refs[j]);
+	    			if (d2 >= 0) {
+	    				links.increment(d2);
+	    			}
+	    		}
+	    	}
+	    	for (int n = 0; n < links.size(); n++) {
+	    		int d2 = links.index(n);
+	    		insLinks.add(g.documentId(d1), g.documentId(d2), links.count(d2));
 	    	}
-    		stmtLinks.setInt(1, resdoc.getInt("pmcId"));
-    		stmtLinks.executeUpdate(); // calculate all link through similarities for one document and store to database
+	    	links.clear();
 	    }
 	    
-		resdoc.close();
-		stmtLinks.close();
-		stmt.execute("ALTER TABLE `similarity_linkthrough` ENABLE KEYS");
-		stmt.close();
+		insLinks.close();
 	}
 }
@@ -0,0 +1,111 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Writes similarities to a tab separated staging file and loads it into a 
+ * <code>sim_*</code> table with <code>LOAD DATA LOCAL INFILE</code> 
+ * whenever the writer is flushed.
+ * 
+ * The MySQL driver must allow local infiles (<code>allowLoadLocalInfile</code>, 
+ * enabled by default in Connector/J 5.1).
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class LoadDataSimilarityWriter extends BufferedSimilarityWriter {
+	private final Connection db;
+	private final String table;
+	private final File file;
+	private Writer out;
+
+	/**
+	 * @param db the database connection
+	 * @param table the table with the columns document1, document2 and value
+	 * @param replace whether an existing table is dropped, otherwise the rows are appended to it
+	 * @param dir the directory for the staging file
+	 * @param batchSize the number of rows per load
+	 * @param flushInterval the time in milliseconds after which pending rows are loaded, 0 for no limit
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	public LoadDataSimilarityWriter(Connection db, String table, boolean replace, File dir, int batchSize, long flushInterval) throws SQLException, IOException {
+		super(batchSize, flushInterval);
+		this.db = db;
+		this.table = table;
+		SimilarityWriters.createTable(db, table, replace);
+		this.file = File.createTempFile(table + ".", ".tsv", dir);
+		this.file.deleteOnExit();
+		open();
+	}
+	
+	private void open() throws IOException {
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "US-ASCII"), 1 << 16);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#buffer(int, int, double)
+	 */
+	protected void buffer(int document1, int document2, double value) throws IOException {
+		out.write(Integer.toString(document1));
+		out.write('\t');
+		out.write(Integer.toString(document2));
+		out.write('\t');
+		out.write(Double.toString(value));
+		out.write('\n');
+	}
+
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.sim.BufferedSimilarityWriter#write()
+	 */
+	protected void write() throws SQLException, IOException {
+		out.close();
+		Statement stmt = db.createStatement();
+		try {
+			stmt.execute("LOAD DATA LOCAL INFILE '" + file.getAbsolutePath().replace("\\", "\\\\").replace("'", "\\'") + "' " +
+					"INTO TABLE `" + table + "` (document1, document2, value)");
+		} finally {
+			stmt.close();
+		}
+		open();
+	}
+
+	/**
+	 * Delete the staging file and enable the keys of the table.
+	 *
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	protected void release() throws SQLException, IOException {
+		out.close();
+		file.delete();
+		SimilarityWriters.enableKeys(db, table);
+	}
+}
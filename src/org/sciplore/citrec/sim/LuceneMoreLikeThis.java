@@ -21,21 +21,24 @@
 package org.sciplore.citrec.sim;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.similar.MoreLikeThis;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.sciplore.citrec.Helper;
 import org.slf4j.Logger;
@@ -46,29 +49,90 @@ import com.google.common.base.Joiner;
 /**
  * Calculate similarities for Lucene MoreLikeThis
  * 
+ * The documents of the index are split into blocks that are processed in 
+ * parallel by <code>numThreads</code> threads. The index reader and searcher 
+ * are shared, each thread has its own MoreLikeThis query builder.
+ * 
+ * With <code>-combinations</code> several combinations of fields are 
+ * handled in one pass, each one is written to its own table 
+ * <code>sim_lucene_&lt;combination&gt;</code>. Without it all arguments 
+ * form one combination as before, e.g. <code>title abstract text</code> 
+ * fills <code>sim_lucene_title_abstract_text</code>. 
+ * With boosted fields the tables are <code>sim_luceneb_&lt;combination&gt;</code>, 
+ * the boosts are applied to the query terms of the fields.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
 public class LuceneMoreLikeThis {
 	private static Logger logger = LoggerFactory.getLogger(LuceneMoreLikeThis.class);
+	private final static int NUM_RESULTS = 100;
 
 	/**
 	 * Calculate similarities for Lucene MoreLikeThis
 	 *
-	 * @param args fields to use for similarity calculations
+	 * @param args fields to use for similarity calculations, or with 
+	 * <code>-combinations</code> combinations of fields, the fields of a 
+	 * combination joined by <code>_</code>, e.g. <code>title_abstract</code>, 
+	 * optionally preceded by <code>-boost</code> to boost the fields by the 
+	 * properties <code>indexBoostTitle</code>, <code>indexBoostAbstract</code> 
+	 * and <code>indexBoostText</code>
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception {
 		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
 		
+		boolean boost = false;
+		boolean multiple = false;
+		int first = 0;
+		for (; first < args.length && args[first].startsWith("-"); first++) {
+			if (args[first].equals("-boost")) {
+				boost = true;
+			} else if (args[first].equals("-combinations")) {
+				multiple = true;
+			} else {
+				usage();
+			}
+		}
+		args = Arrays.copyOfRange(args, first, args.length);
 		if (args.length == 0) {
-			System.err.println("Usage: <programname> <title,abstract,text>...");
-			System.exit(-1);
+			usage();
+		}
+		if (!multiple) { // all fields form one combination
+			args = new String[] { Joiner.on('_').join(args) };
 		}
 		
-		for (String a : args) {
-			if (!a.equals("title") && !a.equals("abstract") && !a.equals("text")) {
-				System.err.println("Usage: <programname> <title,abstract,text>...");
-				System.exit(-1);
+		// fields used by any combination and the field indexes of each combination
+		List<String> fieldList = new ArrayList<String>();
+		final int combinations[][] = new int[args.length][];
+		for (int c = 0; c < args.length; c++) {
+			String combination[] = args[c].split("_");
+			combinations[c] = new int[combination.length];
+			for (int f = 0; f < combination.length; f++) {
+				String a = combination[f];
+				if (!a.equals("title") && !a.equals("abstract") && !a.equals("text")) {
+					usage();
+				}
+				if (!fieldList.contains(a)) {
+					fieldList.add(a);
+				}
+				combinations[c][f] = fieldList.indexOf(a);
+			}
+		}
+		final String fields[] = fieldList.toArray(new String[fieldList.size()]);
+		final String tablePrefix = boost ? "sim_luceneb_" : "sim_lucene_";
+		
+		// query time boosts of the fields
+		final float fieldBoosts[] = new float[fields.length];
+		for (int f = 0; f < fields.length; f++) {
+			if (!boost) {
+				fieldBoosts[f] = 1;
+			} else if (fields[f].equals("title")) {
+				fieldBoosts[f] = Float.parseFloat(p.getProperty("indexBoostTitle", "4"));
+			} else if (fields[f].equals("abstract")) {
+				fieldBoosts[f] = Float.parseFloat(p.getProperty("indexBoostAbstract", "2"));
+			} else {
+				fieldBoosts[f] = Float.parseFloat(p.getProperty("indexBoostText", "1"));
 			}
 		}
 
@@ -87,23 +151,15 @@ public class LuceneMoreLikeThis {
 		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 
-		IndexReader in = IndexReader.open(new NIOFSDirectory(indexDir));
-		IndexSearcher is = new IndexSearcher(in);
+		final IndexReader in = IndexReader.open(new NIOFSDirectory(indexDir));
+		final IndexSearcher is = new IndexSearcher(in);
 
-		Statement stmt = db.createStatement();
-		stmt.execute("DROP TABLE IF EXISTS sim_lucene" + Joiner.on('_').join(args));
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_lucene_" + Joiner.on('_').join(args) + "` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_lucene_" + Joiner.on('_').join(args) + "` DISABLE KEYS");
-		
-		PreparedStatement stmtsim = db.prepareStatement("INSERT INTO `sim_lucene_" + Joiner.on('_').join(args) + "` VALUES(?, ?, ?)");
+		final SimilarityWriter ins[] = new SimilarityWriter[args.length];
+		for (int c = 0; c < args.length; c++) {
+			ins[c] = SimilarityWriters.open(p, db, tablePrefix + args[c], true);
+		}
 
-		Set<String> stopwords = new HashSet<String>();
+		final Set<String> stopwords = new HashSet<String>();
 		stopwords.add("a");
 		stopwords.add("about");
 		stopwords.add("again");
@@ -238,35 +294,91 @@ public class LuceneMoreLikeThis {
 		stopwords.add("without");
 		stopwords.add("would");
 		
-		MoreLikeThis mlt = new MoreLikeThis(in);
-		mlt.setBoost(true);
-		mlt.setFieldNames(args);
-		mlt.setMinWordLen(2);
-		mlt.setStopWords(stopwords);
-
-		for(int i=0; i<in.maxDoc(); i++) {
-			Document doc = in.document(i);
-			if(i % 1000 == 0) {
-				logger.info("{} documents processed.", i);
+		// per thread query builder and collector, the reader and searcher are shared
+		final ThreadLocal<MultiFieldMoreLikeThis> mlts = new ThreadLocal<MultiFieldMoreLikeThis>() {
+			protected MultiFieldMoreLikeThis initialValue() {
+				MultiFieldMoreLikeThis mlt = new MultiFieldMoreLikeThis(in, fields, stopwords, 2);
+				mlt.setFieldBoosts(fieldBoosts);
+				return mlt;
+			}
+		};
+		final ThreadLocal<TopKCollector> collectors = new ThreadLocal<TopKCollector>() {
+			protected TopKCollector initialValue() {
+				return new TopKCollector(new TopK(NUM_RESULTS));
 			}
-			Query query = mlt.like(i);
-			TopDocs docs = is.search(query, 101);
-			
-			for(ScoreDoc d : docs.scoreDocs) {
-				if (Integer.parseInt(doc.get("pmcId")) != Integer.parseInt(in.document(d.doc).get("pmcId"))) {
-		    		stmtsim.setInt(1, Integer.parseInt(doc.get("pmcId")));
-		    		stmtsim.setInt(2, Integer.parseInt(in.document(d.doc).get("pmcId")));
-		    		stmtsim.setDouble(3, d.score);
-		    		stmtsim.executeUpdate();
+		};
+		final int pmcIds[] = pmcIds(in);
+		final AtomicInteger cnt = new AtomicInteger();
+
+		BlockTask.run(numThreads, in.maxDoc(), new BlockTask.Body() {
+			public void process(int i) throws SQLException, IOException {
+				if (in.isDeleted(i)) {
+					return;
+				}
+				MultiFieldMoreLikeThis mlt = mlts.get();
+				TopKCollector collector = collectors.get();
+				// the term vectors are read once for all combinations
+				mlt.setDocument(i);
+				for (int c = 0; c < combinations.length; c++) {
+					Query query = mlt.like(combinations[c]);
+					collector.reset(i);
+					is.search(query, collector);
+					
+					TopK docs = collector.results();
+					docs.sort();
+					synchronized (ins[c]) { // keep the rows of one document together
+						for (int n = 0; n < docs.size(); n++) {
+							ins[c].add(pmcIds[i], pmcIds[docs.id(n)], docs.score(n));
+						}
+					}
+				}
+				int c = cnt.incrementAndGet();
+				if (c % 1000 == 0) {
+					logger.info("{} documents processed.", c);
 				}
 			}
+		});
+		for (SimilarityWriter i : ins) {
+			i.close();
 		}
-		stmtsim.close();
 		is.close();
 		in.close();
-
-		stmt.execute("ALTER TABLE `sim_lucene_" + Joiner.on('_').join(args) + "` ENABLE KEYS");
-		stmt.close();
 		db.close();
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Get the pmcIds of all documents of the index.
+	 * 
+	 * The ids are read from the field cache if the field <code>pmcId</code> 
+	 * is indexed. Older indexes only store it, then the stored field is read 
+	 * once for each document without loading the other fields.
+	 *
+	 * @param in the index reader
+	 * @return the pmcIds by document number, 0 for deleted documents
+	 * @throws IOException on I/O error
+	 */
+	protected static int[] pmcIds(IndexReader in) throws IOException {
+		if (in.getFieldNames(IndexReader.FieldOption.INDEXED).contains("pmcId")) {
+			return FieldCache.DEFAULT.getInts(in, "pmcId", FieldCache.NUMERIC_UTILS_INT_PARSER);
+		}
+		
+		logger.info("Field pmcId is not indexed, reading stored values.");
+		FieldSelector pmcIdOnly = new MapFieldSelector("pmcId");
+		int pmcIds[] = new int[in.maxDoc()];
+		for (int i = 0; i < pmcIds.length; i++) {
+			if (!in.isDeleted(i)) {
+				pmcIds[i] = Integer.parseInt(in.document(i, pmcIdOnly).get("pmcId"));
+			}
+		}
+		return pmcIds;
+	}
+	
+	/**
+	 * Print the usage and exit.
+	 */
+	private static void usage() {
+		System.err.println("Usage: <programname> [-boost] <title|abstract|text>...");
+		System.err.println("       <programname> [-boost] -combinations <title|abstract|text>[_<title|abstract|text>]...");
+		System.exit(-1);
+	}
+}
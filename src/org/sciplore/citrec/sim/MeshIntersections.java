@@ -26,123 +26,196 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 
 import org.sciplore.citrec.Helper;
+import org.sciplore.citrec.TaskScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Calculate similarities based on the intersection of the MeSH terms of two documents
  * 
+ * The descriptors are interned to dense ids when the table <code>mesh</code> 
+ * is read. The descriptors of a document and the documents of a descriptor 
+ * are kept as sorted int arrays. The common descriptors are counted while 
+ * walking the posting lists of a document, so no descriptor lists have to 
+ * be intersected.
+ * 
+ * The number of common descriptors is normalized in several ways at once, 
+ * each normalization is written to its own table, see {@link #score(int, int, int, int)}.
+ * 
  * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
  */
 
 public class MeshIntersections {
-	public static Map<String, Set<Integer>> descriptorDocuments = new HashMap<String, Set<Integer>>();
-	public static Map<Integer, Set<String>> documentDescriptors = new HashMap<Integer, Set<String>>();
+	protected final static int NUM_RESULTS = 100;
+	// output tables of the normalizations of the number of common descriptors
+	protected final static String TABLES[] = { "sim_mesh_intersections", "sim_mesh_jaccard", "sim_mesh_dice", "sim_mesh_cosine", "sim_mesh_overlap" };
+	// pmcIds of the documents with MeSH terms, sorted ascending
+	protected static int docIds[];
+	// sorted descriptor ids of a document
+	protected static int docDescs[][];
+	// sorted document indexes of a descriptor
+	protected static int descDocs[][];
 	
-	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException, InterruptedException {
 		Logger logger = LoggerFactory.getLogger(MeshIntersections.class);
 		Properties p = Helper.getProperties();
 		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
-		Connection dbs[] = new Connection[numThreads];
 
 		// initialize database connections begin
 		Class.forName(p.getProperty("db.driver"));
-		for (int i = 0; i < dbs.length; i++) {
-			dbs[i] = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
-
-		}
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		// initialize database connections end
 
-    	MeshIntersectionsThread t[] = new MeshIntersectionsThread[numThreads];
-
-		Statement stmtdoc = dbs[0].createStatement();
-		ResultSet resMesh = stmtdoc.executeQuery("SELECT document, descriptor FROM mesh");
-
-		while (resMesh.next()) {
-			int doc = resMesh.getInt("document");
-			String desc = resMesh.getString("descriptor");
-			
-			if (!descriptorDocuments.containsKey(desc)) {
-				descriptorDocuments.put(desc, new HashSet<Integer>());
-			}
-			descriptorDocuments.get(desc).add(doc);
-
-			if (!documentDescriptors.containsKey(doc)) {
-				documentDescriptors.put(doc, new HashSet<String>());
-			}
-			documentDescriptors.get(doc).add(desc);
-		}
+		Statement stmtdoc = db.createStatement();
+		load(stmtdoc);
+		logger.info("{} documents with {} descriptors read.", docIds.length, descDocs.length);
 		
 		int cnt = 0;
-		int cnt2 = 0;
 		
-		// For improvement use documentDescriptors keySet
 		ResultSet resDoc = stmtdoc.executeQuery("SELECT DISTINCT pmcId FROM document WHERE pmcId != 0 AND EXISTS (SELECT 1 FROM mesh WHERE document=pmcId)");
 		
-		Statement stmt = dbs[0].createStatement();
-		stmt.execute("DROP TABLE IF EXISTS sim_mesh_intersections");
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_mesh_intersections` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_mesh_intersections` DISABLE KEYS");
+		SimilarityWriter writers[] = new SimilarityWriter[TABLES.length];
+		for (int m = 0; m < TABLES.length; m++) {
+			writers[m] = SimilarityWriters.open(p, db, TABLES[m], true);
+		}
 
-		int i = 0;
+		TaskScheduler<MeshIntersectionsTask.Worker> scheduler = new TaskScheduler<MeshIntersectionsTask.Worker>(numThreads, new TaskScheduler.Resources<MeshIntersectionsTask.Worker>() {
+			public MeshIntersectionsTask.Worker open() {
+				return new MeshIntersectionsTask.Worker(docIds.length);
+			}
+			
+			public void close(MeshIntersectionsTask.Worker worker) {
+			}
+		});
 	    while (resDoc.next()) {
 	    	if (++cnt % 100 == 0) {
 	    		logger.info("MeSH Intersections: {}", cnt);
 	    	}
-	    	
-    		int j = 0;
-	    	while (true) {
-	    		if (i == numThreads) {
-	    			i = 0;
-	    		}
-
-	    		if (t[i] == null || !t[i].isAlive()) {
-	    			t[i] = new MeshIntersectionsThread();
-	    			t[i].doc1 = resDoc.getInt("pmcId");
-	    			t[i].db = dbs[i];
-	    			t[i].start();
-	    			i++;
-	    			break;
-	    		}
-	    		if (j == numThreads) {
-			    	try {
-						Thread.sleep(500);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-					j = 0;
-	    		}
-
-	    		i++;
-	    		j++;
-	    	}
-
-	    	if (cnt % 100 == 0) {
-		    	System.gc();
+	    	int doc = Arrays.binarySearch(docIds, resDoc.getInt("pmcId"));
+	    	if (doc >= 0) {
+	    		scheduler.submit(new MeshIntersectionsTask(writers, doc));
 	    	}
 	    }
+	    scheduler.shutdown();
 	    resDoc.close();
-		stmt.execute("ALTER TABLE `sim_mesh_intersections` ENABLE KEYS");
-		stmt.close();
+		for (SimilarityWriter writer : writers) {
+			writer.close();
+		}
 		stmtdoc.close();
 		
-		for (Connection db : dbs) {
-			db.close();
+		db.close();
+		
+		if (scheduler.failures() > 0) {
+			logger.error("{} documents could not be processed.", scheduler.failures());
+			System.exit(-1);
+		}
+	}
+	
+	/**
+	 * Read the descriptors of all documents.
+	 *
+	 * @param stmt the statement to use
+	 * @throws SQLException on database error
+	 */
+	private static void load(Statement stmt) throws SQLException {
+		Map<String, Integer> descId = new HashMap<String, Integer>();
+		// (document, descriptor) pairs
+		long rows[] = new long[1 << 20];
+		int n = 0;
+		ResultSet resMesh = stmt.executeQuery("SELECT document, descriptor FROM mesh");
+		while (resMesh.next()) {
+			String desc = resMesh.getString("descriptor");
+			Integer id = descId.get(desc);
+			if (id == null) {
+				id = descId.size();
+				descId.put(desc, id);
+			}
+			if (n == rows.length) {
+				rows = Arrays.copyOf(rows, n * 2);
+			}
+			rows[n++] = ((long)resMesh.getInt("document") << 32) | id;
+		}
+		resMesh.close();
+		
+		Arrays.sort(rows, 0, n);
+		int m = 0;
+		int numDocs = 0;
+		for (int i = 0; i < n; i++) {
+			if (m == 0 || rows[i] != rows[m - 1]) {
+				if (m == 0 || (int)(rows[i] >>> 32) != (int)(rows[m - 1] >>> 32)) {
+					numDocs++;
+				}
+				rows[m++] = rows[i];
+			}
+		}
+		
+		docIds = new int[numDocs];
+		docDescs = new int[numDocs][];
+		int descSize[] = new int[descId.size()];
+		int doc = -1;
+		for (int i = 0, start = 0; i < m; i++) {
+			descSize[(int)rows[i]]++;
+			if (i == m - 1 || (int)(rows[i] >>> 32) != (int)(rows[i + 1] >>> 32)) {
+				docIds[++doc] = (int)(rows[i] >>> 32);
+				docDescs[doc] = new int[i + 1 - start];
+				for (int j = start; j <= i; j++) {
+					docDescs[doc][j - start] = (int)rows[j];
+				}
+				start = i + 1;
+			}
+		}
+		rows = null;
+		
+		// documents are added in ascending order, so the lists are sorted
+		descDocs = new int[descSize.length][];
+		for (int desc = 0; desc < descSize.length; desc++) {
+			descDocs[desc] = new int[descSize[desc]];
+			descSize[desc] = 0;
+		}
+		for (doc = 0; doc < numDocs; doc++) {
+			for (int desc : docDescs[doc]) {
+				descDocs[desc][descSize[desc]++] = doc;
+			}
+		}
+	}
+	
+	/**
+	 * Normalize the number of common descriptors of two documents.
+	 * 
+	 * <ol start="0">
+	 * <li>share of the descriptors of the second document (<code>sim_mesh_intersections</code>)</li>
+	 * <li>Jaccard coefficient</li>
+	 * <li>Dice coefficient</li>
+	 * <li>cosine</li>
+	 * <li>overlap coefficient</li>
+	 * </ol>
+	 *
+	 * @param measure the index of the normalization in {@link #TABLES}
+	 * @param common the number of common descriptors
+	 * @param size1 the number of descriptors of the first document
+	 * @param size2 the number of descriptors of the second document
+	 * @return the score
+	 */
+	protected static double score(int measure, int common, int size1, int size2) {
+		switch (measure) {
+		case 0:
+			return (double)common / size2;
+		case 1:
+			return (double)common / (size1 + size2 - common);
+		case 2:
+			return 2. * common / (size1 + size2);
+		case 3:
+			return common / Math.sqrt((double)size1 * size2);
+		case 4:
+			return (double)common / Math.min(size1, size2);
+		default:
+			throw new IllegalArgumentException("Unknown measure " + measure);
 		}
-
-		System.out.println(cnt2);
 	}
 }
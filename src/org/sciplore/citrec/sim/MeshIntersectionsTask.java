@@ -0,0 +1,105 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.sciplore.citrec.TaskScheduler;
+
+/**
+ * Calculate similarities based on the intersection of the MeSH terms of two documents
+ * 
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class MeshIntersectionsTask implements TaskScheduler.Task<MeshIntersectionsTask.Worker> {
+	protected SimilarityWriter writers[];
+	protected int doc1;
+	
+	/**
+	 * @param writers the writers for the results, in the order of {@link MeshIntersections#TABLES}
+	 * @param doc1 the index of the document
+	 */
+	public MeshIntersectionsTask(SimilarityWriter writers[], int doc1) {
+		this.writers = writers;
+		this.doc1 = doc1;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.sciplore.citrec.TaskScheduler.Task#run(java.lang.Object)
+	 */
+	public void run(Worker w) throws SQLException, IOException {
+		int descs1[] = MeshIntersections.docDescs[doc1];
+		
+		// documents sharing at least one descriptor, counting the shared descriptors
+		for (int desc : descs1) {
+			for (int doc2 : MeshIntersections.descDocs[desc]) {
+				if (doc2 != doc1) {
+					w.candidates.increment(doc2);
+				}
+			}
+		}
+		
+		for (TopK results : w.results) {
+			results.clear();
+		}
+		for (int c = 0; c < w.candidates.size(); c++) {
+			int doc2 = w.candidates.index(c);
+			int commonDesc = w.candidates.count(doc2);
+			if (commonDesc > 3) {
+				for (int m = 0; m < w.results.length; m++) {
+					w.results[m].offer(doc2, MeshIntersections.score(m, commonDesc, descs1.length, MeshIntersections.docDescs[doc2].length));
+				}
+			}
+		}
+		w.candidates.clear();
+		
+		for (int m = 0; m < w.results.length; m++) {
+			TopK results = w.results[m];
+			SimilarityWriter ins = writers[m];
+			results.sort();
+			synchronized (ins) { // keep the rows of one document together
+				for (int i = 0; i < results.size(); i++) {
+					ins.add(MeshIntersections.docIds[doc1], MeshIntersections.docIds[results.id(i)], results.score(i));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scratch space of a worker reused by all tasks of the worker.
+	 */
+	public static class Worker {
+		private SparseCounter candidates;
+		private TopK results[];
+		
+		/**
+		 * @param numDocs the number of documents
+		 */
+		public Worker(int numDocs) {
+			this.results = new TopK[MeshIntersections.TABLES.length];
+			for (int m = 0; m < MeshIntersections.TABLES.length; m++) {
+				this.results[m] = new TopK(MeshIntersections.NUM_RESULTS);
+			}
+			this.candidates = new SparseCounter(numDocs);
+		}
+	}
+}
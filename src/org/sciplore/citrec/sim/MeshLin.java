@@ -23,17 +23,20 @@ package org.sciplore.citrec.sim;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.sciplore.citrec.Helper;
+import org.sciplore.citrec.TaskScheduler;
 
 /**
  * Calculate document similarity based on Lin's measure of information content applied to MeSH terms
@@ -42,81 +45,90 @@ import org.sciplore.citrec.Helper;
  */
 
 public class MeshLin {
-	private final static int NUM_RESULTS = 100;
-//	private static ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
-//	private static Map<String, Map<String, Double>> descSimCache = new HashMap<String, Map<String,Double>>();
-	protected static Map<String, Vector<Term>> meshDesc = new HashMap<String, Vector<Term>>();
-	protected static Map<String, Double> meshId = new HashMap<String, Double>();
-	protected static Map<Integer, Vector<String>> docDesc = new HashMap<Integer, Vector<String>>();
+	protected final static int NUM_RESULTS = 100;
+	protected static MeshTreeIndex meshTree;
+	// descriptors are numbered in order of their first occurrence in the documents
+	protected static Map<String, Integer> descId = new HashMap<String, Integer>();
+	protected static Vector<String> descName = new Vector<String>();
+	// tree nodes of the descriptors, null if not in the MeSH tree
+	protected static int descNodes[][];
+	// pmcIds of the documents, sorted ascending, and their descriptor ids
+	protected static int docIds[];
+	protected static int docDescs[][];
+	// top level branches of the descriptors of a document (node ids of the 
+	// branch roots) and the inverted index from a branch to the documents
+	protected static int docBranches[][];
+	protected static int branchDocs[][];
+	// maximum Lin similarity of the tree numbers of two descriptors
+	protected static PairCache descSimCache;
 	
 	public static void main(String[] args) throws ClassNotFoundException, SQLException, InterruptedException, IOException {
 		Properties p = Helper.getProperties();
 		int NUM_THREADS = Integer.parseInt(p.getProperty("numThreads"));
+		descSimCache = new PairCache(Integer.parseInt(p.getProperty("MeshLin.cacheSize", "20000000")), NUM_THREADS);
 		Class.forName(p.getProperty("db.driver"));
 
-		Connection dbs[] = new Connection[NUM_THREADS];
-		PreparedStatement stmtSim[] = new PreparedStatement[NUM_THREADS];
-    	MeshLinThread t[] = new MeshLinThread[NUM_THREADS];
-    	String simQuery = "INSERT INTO sim_mesh_lin VALUES";
-    	
-    	for (int i = 0; i < NUM_RESULTS; i++) {
-    		simQuery += (i != 0 ? "," : "") + " (?, ?, ?)";
-    	}
-
-		for (int i = 0; i < NUM_THREADS; i++) {
-			dbs[i] = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
-			stmtSim[i] = dbs[i].prepareStatement(simQuery);
-		}
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
 		
-		Statement stmt = dbs[0].createStatement();
+		// the rows of an interrupted run are kept, documents with rows are skipped
+		SimilarityWriter ins = SimilarityWriters.open(p, db, "sim_mesh_lin", false);
 
-		stmt.execute("CREATE TABLE IF NOT EXISTS `sim_mesh_lin` (" +
-				"`document1` int(11) NOT NULL," +
-				"`document2` int(11) NOT NULL," +
-				"`value` double NOT NULL," +
-				"KEY `document1` (`document1`)," +
-				"KEY `document2` (`document2`)" +
-				") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
-		stmt.execute("ALTER TABLE `sim_mesh_lin` DISABLE KEYS");
-
-		Statement stmtMeshTree = dbs[0].createStatement();
-		ResultSet resMeshTree = stmtMeshTree.executeQuery("SELECT DISTINCT id, descriptor AS term, ic FROM meshtree");
-//		ResultSet resMeshTree = stmtMeshTree.executeQuery("SELECT t.id, term, ic FROM meshtree_terms t LEFT JOIN meshtree m ON t.id=m.id"); // not DISTINCT because of case sensitivity
-		while (resMeshTree.next()) {
-			if (!meshDesc.containsKey(resMeshTree.getString("term"))) {
-				meshDesc.put(resMeshTree.getString("term"), new Vector<Term>());
-			}
-			meshDesc.get(resMeshTree.getString("term")).add(new Term(resMeshTree.getString("id"), resMeshTree.getDouble("ic")));
-			meshId.put(resMeshTree.getString("id"), resMeshTree.getDouble("ic"));
-		}
-		resMeshTree.close();
-		stmtMeshTree.close();
+		meshTree = MeshTreeIndex.load(db);
 		
-		Statement stmtDoc = dbs[0].createStatement();
+		Statement stmtDoc = db.createStatement();
 		ResultSet resDoc = stmtDoc.executeQuery("SELECT DISTINCT document, descriptor FROM mesh WHERE major != 0");
+		Map<Integer, Vector<Integer>> tmpDocDesc = new HashMap<Integer, Vector<Integer>>();
 		while (resDoc.next()) {
-			if (!docDesc.containsKey(resDoc.getInt("document"))) {
-				docDesc.put(resDoc.getInt("document"), new Vector<String>());
+			String desc = resDoc.getString("descriptor");
+			if (!descId.containsKey(desc)) {
+				descId.put(desc, descName.size());
+				descName.add(desc);
+			}
+			if (!tmpDocDesc.containsKey(resDoc.getInt("document"))) {
+				tmpDocDesc.put(resDoc.getInt("document"), new Vector<Integer>());
 			}
-			docDesc.get(resDoc.getInt("document")).add(resDoc.getString("descriptor"));
+			tmpDocDesc.get(resDoc.getInt("document")).add(descId.get(desc));
 		}
 		resDoc.close();
 		stmtDoc.close();
 		
-		int i = 0;
-		int j = 0;
+		docIds = new int[tmpDocDesc.size()];
+		int n = 0;
+		for (Integer d : tmpDocDesc.keySet()) {
+			docIds[n++] = d;
+		}
+		Arrays.sort(docIds);
+		docDescs = new int[docIds.length][];
+		for (int k = 0; k < docIds.length; k++) {
+			Vector<Integer> descs = tmpDocDesc.get(docIds[k]);
+			docDescs[k] = new int[descs.size()];
+			for (int l = 0; l < docDescs[k].length; l++) {
+				docDescs[k][l] = descs.get(l);
+			}
+		}
+		tmpDocDesc = null;
+		
+		descNodes = new int[descName.size()][];
+		for (int k = 0; k < descNodes.length; k++) {
+			descNodes[k] = meshTree.nodes(descName.get(k));
+		}
+		
+		buildBranchIndex();
+		
 		int cnt = 0;
 		
-		Statement stmtDoneDocs = dbs[0].createStatement();
-		ResultSet resDoneDoc = stmtDoneDocs.executeQuery("SELECT DISTINCT document1 FROM sim_mesh_lin");
 		TreeSet<Integer> doneDocs = new TreeSet<Integer>();
-		while (resDoneDoc.next()) {
-			doneDocs.add(resDoneDoc.getInt("document1"));
+		if (SimilarityWriters.database(p)) { // files are overwritten, so only the database has results to resume from
+			Statement stmtDoneDocs = db.createStatement();
+			ResultSet resDoneDoc = stmtDoneDocs.executeQuery("SELECT DISTINCT document1 FROM sim_mesh_lin");
+			while (resDoneDoc.next()) {
+				doneDocs.add(resDoneDoc.getInt("document1"));
+			}
+			resDoneDoc.close();
+			stmtDoneDocs.close();
 		}
-		resDoneDoc.close();
-		stmtDoneDocs.close();
 
-//		Statement stmtTodoDocs = dbs[0].createStatement();
+//		Statement stmtTodoDocs = db.createStatement();
 //		ResultSet resTodoDoc = stmtTodoDocs.executeQuery("SELECT DISTINCT id FROM todo_sim_mesh_lin ORDER BY id LIMIT " + args[0] + ",20000");
 //		TreeSet<Integer> todoDocs = new TreeSet<Integer>();
 //		while (resTodoDoc.next()) {
@@ -125,120 +137,236 @@ public class MeshLin {
 //		resTodoDoc.close();
 //		stmtTodoDocs.close();
 
-		for (Integer d : docDesc.keySet()) {
-//			if (!todoDocs.contains(d) || doneDocs.contains(d)) {
-			if (doneDocs.contains(d)) {
-				continue;
-			}
+		int failures = 0;
+		if ("documents".equals(p.getProperty("MeshLin.mode", "documents"))) {
+			// one task per document scoring it against all candidates
+			TaskScheduler<SparseCounter> scheduler = new TaskScheduler<SparseCounter>(NUM_THREADS, new TaskScheduler.Resources<SparseCounter>() {
+				public SparseCounter open() {
+					return new SparseCounter(docIds.length);
+				}
+				
+				public void close(SparseCounter candidates) {
+				}
+			});
+
+			for (int d = 0; d < docIds.length; d++) {
+	//			if (!todoDocs.contains(docIds[d]) || doneDocs.contains(docIds[d])) {
+				if (doneDocs.contains(docIds[d])) {
+					continue;
+				}
 			
-			if (++cnt % 100 == 0) {
-				System.err.println(cnt);
-		    	System.gc();
-			}
+				if (++cnt % 100 == 0) {
+					System.err.println(cnt + " (descriptor cache " + descSimCache + ")");
+				}
 			
-			System.out.println(d);
-
-			while (true) {
-				if (i == NUM_THREADS) {
-	    			i = 0;
-	    		}
-
-	    		if (t[i] == null || !t[i].isAlive()) {
-	    			t[i] = null;
-	    			t[i] = new MeshLinThread(stmtSim[i], d);
-	    			t[i].start();
-	    			i++;
-	    			break;
-	    		}
-	    		if (j == NUM_THREADS) {
-			    	try {
-						Thread.sleep(10);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-					j = 0;
-	    		}
-
-	    		i++;
-	    		j++;
-	    	}
-		}
-		
-		for (Thread thread : t) {
-			if (thread != null) {
-				thread.join();
+				System.out.println(docIds[d]);
+				scheduler.submit(new MeshLinTask(ins, d));
 			}
+			scheduler.shutdown();
+			failures = scheduler.failures();
+		} else {
+			computePairs(ins, NUM_THREADS, doneDocs);
 		}
+		ins.close();
 		
-		stmt.execute("ALTER TABLE `sim_mesh_lin` ENABLE KEYS");
-		stmt.close();
+		db.close();
 		
-		for (Connection d : dbs) {
-			d.close();
+		if (failures > 0) {
+			System.err.println(failures + " documents could not be processed.");
+			System.exit(-1);
 		}
 	}
 	
-//	protected static Double getCachedDescSim(String desc1, String desc2) {
-//		if (desc1.compareTo(desc2) > 0) {
-//			String tmp = desc2;
-//			desc2 = desc1;
-//			desc1 = tmp;
-//		}
-//		rwl.readLock().lock();
-//		if (descSimCache.containsKey(desc1) && descSimCache.get(desc1).containsKey(desc2)) {
-//			double v = descSimCache.get(desc1).get(desc2);
-//			rwl.readLock().unlock();
-//			return v;
-//		}
-//		rwl.readLock().unlock();
-//		return null;
-//	}
-//
-//	protected static void setCachedDescSim(String desc1, String desc2, double value) {
-//		if (desc1.compareTo(desc2) > 0) {
-//			String tmp = desc2;
-//			desc2 = desc1;
-//			desc1 = tmp;
-//		}
-//		
-//		rwl.writeLock().lock();
-//		if (!descSimCache.containsKey(desc1)) {
-//				descSimCache.put(desc1, new TreeMap<String, Double>());
-//		}
-//		descSimCache.get(desc1).put(desc2, value);
-//		rwl.writeLock().unlock();
-//	}
-}
-
-class Term {
-	private String id;
-	private double ic;
-	
-	public Term(String id, double ic) {
-		this.id = id;
-		this.ic = ic;
+	/**
+	 * Score each unordered pair of documents sharing a branch once and offer 
+	 * the score to the top lists of both documents. The top lists of all 
+	 * documents are kept in memory until all pairs are scored, documents 
+	 * already in the table are not written again.
+	 * Unlike the documents mode this cannot resume after a crash: nothing is 
+	 * written before all pairs are scored, and a restart scores all pairs 
+	 * again, including those of documents already in the table.
+	 *
+	 * @param ins the writer for the results
+	 * @param numThreads the number of worker threads
+	 * @param doneDocs pmcIds of the documents already in the table
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	private static void computePairs(SimilarityWriter ins, int numThreads, Set<Integer> doneDocs) throws SQLException, IOException {
+		final TopK results[] = new TopK[docIds.length];
+		for (int d = 0; d < docIds.length; d++) {
+			results[d] = new TopK(NUM_RESULTS);
+		}
+		final AtomicInteger cnt = new AtomicInteger();
+		// per thread scratch space for the candidate documents
+		final ThreadLocal<SparseCounter> candidates = new ThreadLocal<SparseCounter>() {
+			protected SparseCounter initialValue() {
+				return new SparseCounter(docIds.length);
+			}
+		};
+		
+		BlockTask.run(numThreads, docIds.length, new BlockTask.Body() {
+			public void process(int d1) {
+				SparseCounter c = candidates.get();
+				// only documents sharing a top level branch can be similar
+				for (int b : docBranches[d1]) {
+					for (int d2 : branchDocs[b]) {
+						if (d2 > d1) {
+							c.increment(d2);
+						}
+					}
+				}
+				for (int n = 0; n < c.size(); n++) {
+					int d2 = c.index(n);
+					double sim = similarity(d1, d2);
+					if (sim != 0) {
+						synchronized (results[d1]) {
+							results[d1].offer(d2, sim);
+						}
+						synchronized (results[d2]) {
+							results[d2].offer(d1, sim);
+						}
+					}
+				}
+				c.clear();
+				int done = cnt.incrementAndGet();
+				if (done % 1000 == 0) {
+					System.err.println(done + " (descriptor cache " + descSimCache + ")");
+				}
+			}
+		});
+		
+		for (int d = 0; d < docIds.length; d++) {
+			if (!doneDocs.contains(docIds[d])) {
+				results[d].sort();
+				for (int n = 0; n < results[d].size(); n++) {
+					ins.add(docIds[d], docIds[results[d].id(n)], results[d].score(n));
+				}
+			}
+			results[d] = null;
+		}
 	}
 	
-	protected double compareToLin(Term t) {
-		if(id.equals(t.id)) {
-			return 1;
+	/**
+	 * Calculate the similarity of two documents: the best matches of the 
+	 * descriptors of each document in the other one, averaged over the 
+	 * descriptors of both documents. The similarity is symmetric.
+	 *
+	 * @param doc1 the index of the first document
+	 * @param doc2 the index of the second document
+	 * @return the similarity
+	 */
+	protected static double similarity(int doc1, int doc2) {
+		double simDesc;
+		double simDoc = 0;
+		int cnt = 0;
+		for (int d2 : docDescs[doc2]) {
+			simDesc = 0.;
+			for (int d1 : docDescs[doc1]) {
+				simDesc = Math.max(simDesc, getDescSim(d1, d2));
+			}
+			// similarity between two descriptors
+			simDoc += simDesc;
+			cnt++;
 		}
-		String ids[] = id.split("\\.");
-		String ids2[] = t.id.split("\\.");
-		if (ids.length < 1 || ids2.length < 1 || !ids[0].equals(ids2[0])) {
-			return 0;
+		
+		for (int d1 : docDescs[doc1]) {
+			simDesc = 0.;
+			for (int d2 : docDescs[doc2]) {
+				simDesc = Math.max(simDesc, getDescSim(d1, d2));
+			}
+			// similarity between two descriptors
+			simDoc += simDesc;
+			cnt++;
 		}
-		int i = 1;
-		String lcs = ids[0];
-		while (ids.length > i && ids2.length > i && ids[i].equals(ids2[i])) {
-			lcs += "." + ids[i];
-			i++;
+		
+		// similarity between two documents
+		return simDoc / cnt;
+	}
+	
+	/**
+	 * Build the inverted index from the top level branches of the MeSH tree 
+	 * to the documents. The Lin similarity of two tree numbers in different 
+	 * branches is 0, so only documents sharing at least one branch can have 
+	 * a similarity above 0.
+	 */
+	private static void buildBranchIndex() {
+		int branchSize[] = new int[meshTree.size()];
+		int branches[] = new int[16];
+		docBranches = new int[docIds.length][];
+		for (int d = 0; d < docIds.length; d++) {
+			int n = 0;
+			for (int desc : docDescs[d]) {
+				if (descNodes[desc] == null) {
+					continue;
+				}
+				for (int node : descNodes[desc]) {
+					if (n == branches.length) {
+						branches = Arrays.copyOf(branches, n * 2);
+					}
+					branches[n++] = meshTree.branch(node);
+				}
+			}
+			Arrays.sort(branches, 0, n);
+			int m = 0;
+			for (int k = 0; k < n; k++) {
+				if (m == 0 || branches[k] != branches[m - 1]) {
+					branches[m++] = branches[k];
+				}
+			}
+			docBranches[d] = Arrays.copyOf(branches, m);
+			for (int b : docBranches[d]) {
+				branchSize[b]++;
+			}
 		}
 		
-		return (2 * MeshLin.meshId.get(lcs)) / (ic + t.ic);
+		branchDocs = new int[meshTree.size()][];
+		for (int d = 0; d < docIds.length; d++) {
+			for (int b : docBranches[d]) {
+				if (branchDocs[b] == null) {
+					branchDocs[b] = new int[branchSize[b]];
+					branchSize[b] = 0;
+				}
+				branchDocs[b][branchSize[b]++] = d;
+			}
+		}
 	}
 	
-	public String toString() {
-		return id + " => " + ic;
+	/**
+	 * Get the maximum Lin similarity between the tree numbers of two 
+	 * descriptors. The similarity is symmetric, so it is cached once for 
+	 * both orders.
+	 *
+	 * @param desc1 the id of the first descriptor
+	 * @param desc2 the id of the second descriptor
+	 * @return the similarity
+	 */
+	protected static double getDescSim(int desc1, int desc2) {
+		if (desc1 > desc2) {
+			int tmp = desc2;
+			desc2 = desc1;
+			desc1 = tmp;
+		}
+		double v = descSimCache.get(desc1, desc2);
+		if (!Double.isNaN(v)) {
+			return v;
+		}
+		
+		double tmpVal = 0;
+		if (descNodes[desc1] == null) {
+			System.err.println("Not in MeSH tree: " + descName.get(desc1));
+		} else if (descNodes[desc2] == null) {
+			System.err.println("Not in MeSH tree: " + descName.get(desc2));
+		} else {
+			for (int t1 : descNodes[desc1]) {
+				for (int t2 : descNodes[desc2]) {
+					// calc similarity between t1 and t2
+					tmpVal = Math.max(tmpVal, meshTree.lin(t1, t2));
+				}
+			}
+		}
+		descSimCache.put(desc1, desc2, tmpVal);
+		return tmpVal;
 	}
-}
\ No newline at end of file
+}
+
@@ -0,0 +1,83 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.sciplore.citrec.TaskScheduler;
+
+/**
+ * Calculate document similarity based on Lin's measure of information content applied to MeSH terms
+ * 
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+
+public class MeshLinTask implements TaskScheduler.Task<SparseCounter> {
+	private SimilarityWriter ins;
+	private int doc;
+	
+	/**
+	 * @param ins the insert for the results
+	 * @param doc the document index
+	 */
+	public MeshLinTask(SimilarityWriter ins, int doc) {
+		this.ins = ins;
+		this.doc = doc;
+	}
+	
+	/**
+	 * @param candidates scratch space of the worker for the candidate documents, cleared after use
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	public void run(SparseCounter candidates) throws SQLException, IOException {
+		TopK results = new TopK(MeshLin.NUM_RESULTS);
+		
+		double simDoc;
+
+		// only documents sharing a top level branch can be similar
+		for (int b : MeshLin.docBranches[doc]) {
+			for (int d : MeshLin.branchDocs[b]) {
+				if (d != doc) {
+					candidates.increment(d);
+				}
+			}
+		}
+
+		for (int c = 0; c < candidates.size(); c++) {
+			int d = candidates.index(c);
+			
+			simDoc = MeshLin.similarity(doc, d);
+			if (simDoc != 0) {
+				results.offer(d, simDoc);
+			}
+		}
+		candidates.clear();
+		
+		results.sort();
+		synchronized (ins) { // keep the rows of one document together
+			for (int i = 0; i < results.size(); i++) {
+				ins.add(MeshLin.docIds[doc], MeshLin.docIds[results.id(i)], results.score(i));
+			}
+		}
+	}
+}
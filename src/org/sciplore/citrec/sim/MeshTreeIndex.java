@@ -0,0 +1,267 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Array-based index of the MeSH tree.
+ * 
+ * Every tree number (e.g. <code>C04.557.337</code>) is a node with an int 
+ * id. Parent, depth and Information Content of the nodes are stored in 
+ * primitive arrays, so the lowest common ancestor of two nodes and the Lin 
+ * similarity are computed by walking up the parent pointers without any 
+ * allocation. Prefixes of tree numbers that are not in the table themselves 
+ * are added as nodes without a descriptor and an Information Content of 0. 
+ * Top level nodes have the parent -1.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class MeshTreeIndex {
+	private int size = 0;
+	private int parent[] = new int[1 << 16];
+	private int depth[] = new int[1 << 16];
+	private double ic[] = new double[1 << 16];
+	private boolean entry[] = new boolean[1 << 16];
+	private String treeNumber[] = new String[1 << 16];
+	private Map<String, Integer> nodeId = new HashMap<String, Integer>();
+	private Map<String, int[]> descNodes = new HashMap<String, int[]>();
+	private int numEntries = 0;
+	
+	private MeshTreeIndex() {
+	}
+	
+	/**
+	 * Read the MeSH tree from the table <code>meshtree</code>.
+	 *
+	 * @param db the database connection
+	 * @return the index
+	 * @throws SQLException on database error
+	 */
+	public static MeshTreeIndex load(Connection db) throws SQLException {
+		MeshTreeIndex t = new MeshTreeIndex();
+		Map<String, Vector<Integer>> tmpDescNodes = new HashMap<String, Vector<Integer>>();
+		
+		Statement stmt = db.createStatement();
+		ResultSet res = stmt.executeQuery("SELECT id, descriptor, ic FROM meshtree");
+		while (res.next()) {
+			int n = t.add(res.getString("id").trim());
+			if (t.entry[n]) { // duplicate row
+				continue;
+			}
+			t.entry[n] = true;
+			t.ic[n] = res.getDouble("ic");
+			t.numEntries++;
+			String desc = res.getString("descriptor");
+			if (!tmpDescNodes.containsKey(desc)) {
+				tmpDescNodes.put(desc, new Vector<Integer>());
+			}
+			tmpDescNodes.get(desc).add(n);
+		}
+		res.close();
+		stmt.close();
+		
+		for (String desc : tmpDescNodes.keySet()) {
+			int nodes[] = new int[tmpDescNodes.get(desc).size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = tmpDescNodes.get(desc).get(i);
+			}
+			t.descNodes.put(desc, nodes);
+		}
+		
+		return t;
+	}
+	
+	/**
+	 * Add a tree number and all its prefixes.
+	 *
+	 * @return the node id of the tree number
+	 */
+	private int add(String id) {
+		Integer n = nodeId.get(id);
+		if (n != null) {
+			return n;
+		}
+		int dot = id.lastIndexOf('.');
+		int p = dot < 0 ? -1 : add(id.substring(0, dot));
+		if (size == parent.length) {
+			parent = Arrays.copyOf(parent, size * 2);
+			depth = Arrays.copyOf(depth, size * 2);
+			ic = Arrays.copyOf(ic, size * 2);
+			entry = Arrays.copyOf(entry, size * 2);
+			treeNumber = Arrays.copyOf(treeNumber, size * 2);
+		}
+		parent[size] = p;
+		depth[size] = p < 0 ? 0 : depth[p] + 1;
+		treeNumber[size] = id;
+		nodeId.put(id, size);
+		return size++;
+	}
+	
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param desc the descriptor
+	 * @return the nodes of the descriptor's tree numbers or null if the descriptor is not in the tree
+	 */
+	public int[] nodes(String desc) {
+		return descNodes.get(desc);
+	}
+	
+	/**
+	 * @param id the tree number
+	 * @return the node or -1 if the tree number is unknown
+	 */
+	public int node(String id) {
+		Integer n = nodeId.get(id);
+		return n == null ? -1 : n;
+	}
+	
+	/**
+	 * @param n the node
+	 * @return the tree number of the node
+	 */
+	public String treeNumber(int n) {
+		return treeNumber[n];
+	}
+	
+	/**
+	 * @param n the node
+	 * @return the parent node or -1 for top level nodes
+	 */
+	public int parent(int n) {
+		return parent[n];
+	}
+	
+	/**
+	 * @param n the node
+	 * @return the depth of the node, 0 for top level nodes
+	 */
+	public int depth(int n) {
+		return depth[n];
+	}
+	
+	/**
+	 * @param n the node
+	 * @return the top level node the node belongs to
+	 */
+	public int branch(int n) {
+		while (parent[n] >= 0) {
+			n = parent[n];
+		}
+		return n;
+	}
+	
+	/**
+	 * @param n the node
+	 * @return the Information Content of the node
+	 */
+	public double ic(int n) {
+		return ic[n];
+	}
+	
+	/**
+	 * @param n the node
+	 * @return whether the node is a row of the table or only a prefix of one
+	 */
+	public boolean isEntry(int n) {
+		return entry[n];
+	}
+	
+	/**
+	 * @param a the first node
+	 * @param b the second node
+	 * @return the lowest common ancestor or -1 if the nodes are in different branches
+	 */
+	public int lca(int a, int b) {
+		while (depth[a] > depth[b]) {
+			a = parent[a];
+		}
+		while (depth[b] > depth[a]) {
+			b = parent[b];
+		}
+		while (a != b) {
+			a = parent[a];
+			b = parent[b];
+		}
+		return a;
+	}
+	
+	/**
+	 * Calculate Lin's similarity of two nodes: twice the Information Content 
+	 * of the lowest common ancestor divided by the sum of the Information 
+	 * Content of both nodes.
+	 *
+	 * @param a the first node
+	 * @param b the second node
+	 * @return the similarity, 1 for identical nodes and 0 for nodes in different branches
+	 */
+	public double lin(int a, int b) {
+		if (a == b) {
+			return 1;
+		}
+		int l = lca(a, b);
+		if (l < 0) {
+			return 0;
+		}
+		return (2 * ic[l]) / (ic[a] + ic[b]);
+	}
+	
+	/**
+	 * Calculate the Information Content of all nodes from the structure of the 
+	 * tree: -log(p) where p is the number of rows in the subtree of the node 
+	 * divided by the total number of rows.
+	 */
+	public void computeInformationContent() {
+		int cnt[] = new int[size];
+		int maxDepth = 0;
+		for (int n = 0; n < size; n++) {
+			maxDepth = Math.max(maxDepth, depth[n]);
+		}
+		for (int d = maxDepth; d >= 0; d--) { // children before parents
+			for (int n = 0; n < size; n++) {
+				if (depth[n] == d) {
+					if (entry[n]) {
+						cnt[n]++;
+					}
+					if (parent[n] >= 0) {
+						cnt[parent[n]] += cnt[n];
+					}
+				}
+			}
+		}
+		for (int n = 0; n < size; n++) {
+			ic[n] = cnt[n] > 0 ? Math.log((double)cnt[n] / (double)numEntries) * -1 : 0;
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DefaultSimilarity;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similar.MoreLikeThis;
+
+/**
+ * Builds MoreLikeThis queries for several combinations of fields of the same 
+ * document.
+ * 
+ * The queries are the ones of Lucene's {@link MoreLikeThis} with boosting 
+ * enabled and the default term and document frequency limits. The term 
+ * vectors of a document are read once for all combinations and the document 
+ * frequencies of its terms are looked up once per field. Fields without term 
+ * vectors do not contribute terms.
+ * 
+ * Instances are not thread-safe, each thread needs its own one.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class MultiFieldMoreLikeThis {
+	private final IndexReader in;
+	private final String fields[];
+	private final Set<?> stopwords;
+	private final int minWordLen;
+	private final Similarity similarity = new DefaultSimilarity();
+	// query time boosts of the fields
+	private final float fieldBoosts[];
+	
+	// terms and frequencies of the current document by field
+	private final String terms[][];
+	private final int freqs[][];
+	// document frequencies of the terms of the current document by field, -1 if not looked up yet
+	private final Map<String, int[]> docFreqs = new HashMap<String, int[]>();
+	
+	/**
+	 * @param in the index reader
+	 * @param fields all fields used by any combination
+	 * @param stopwords words to ignore
+	 * @param minWordLen the minimum length of words to use
+	 */
+	public MultiFieldMoreLikeThis(IndexReader in, String fields[], Set<?> stopwords, int minWordLen) {
+		this.in = in;
+		this.fields = fields;
+		this.stopwords = stopwords;
+		this.minWordLen = minWordLen;
+		this.terms = new String[fields.length][];
+		this.freqs = new int[fields.length][];
+		this.fieldBoosts = new float[fields.length];
+		Arrays.fill(fieldBoosts, 1);
+	}
+	
+	/**
+	 * Set the boosts of the fields. The boost of the field of a term is 
+	 * multiplied with the boost of the term in the query. This ranks the 
+	 * results like boosting the fields at indexing time.
+	 *
+	 * @param fieldBoosts the boosts in the order of the fields given to the constructor
+	 */
+	public void setFieldBoosts(float fieldBoosts[]) {
+		System.arraycopy(fieldBoosts, 0, this.fieldBoosts, 0, this.fieldBoosts.length);
+	}
+	
+	/**
+	 * Read the term vectors of a document.
+	 *
+	 * @param docNum the document number
+	 * @throws IOException on I/O error
+	 */
+	public void setDocument(int docNum) throws IOException {
+		docFreqs.clear();
+		for (int f = 0; f < fields.length; f++) {
+			TermFreqVector vector = in.getTermFreqVector(docNum, fields[f]);
+			if (vector == null) {
+				terms[f] = new String[0];
+				freqs[f] = new int[0];
+			} else {
+				terms[f] = vector.getTerms();
+				freqs[f] = vector.getTermFrequencies();
+			}
+		}
+	}
+	
+	/**
+	 * Build the query for the current document.
+	 *
+	 * @param combination the indexes of the fields of the combination in the fields given to the constructor
+	 * @return the query
+	 * @throws IOException on I/O error
+	 */
+	public Query like(int combination[]) throws IOException {
+		// term frequencies over the fields of the combination
+		Map<String, int[]> termFreqs = new HashMap<String, int[]>();
+		for (int f : combination) {
+			for (int t = 0; t < terms[f].length; t++) {
+				String term = terms[f][t];
+				if (isNoiseWord(term)) {
+					continue;
+				}
+				int tf[] = termFreqs.get(term);
+				if (tf == null) {
+					termFreqs.put(term, new int[] { freqs[f][t] });
+				} else {
+					tf[0] += freqs[f][t];
+				}
+			}
+		}
+		
+		int numDocs = in.numDocs();
+		ScoredTerm scored[] = new ScoredTerm[termFreqs.size()];
+		int n = 0;
+		for (Map.Entry<String, int[]> e : termFreqs.entrySet()) {
+			int tf = e.getValue()[0];
+			if (tf < MoreLikeThis.DEFAULT_MIN_TERM_FREQ) {
+				continue;
+			}
+			// the field with the highest document frequency is queried
+			int topField = combination[0];
+			int docFreq = 0;
+			for (int f : combination) {
+				int freq = docFreq(e.getKey(), f);
+				topField = (freq > docFreq) ? f : topField;
+				docFreq = (freq > docFreq) ? freq : docFreq;
+			}
+			if (docFreq < MoreLikeThis.DEFAULT_MIN_DOC_FREQ || docFreq > MoreLikeThis.DEFAULT_MAX_DOC_FREQ) {
+				continue;
+			}
+			scored[n++] = new ScoredTerm(e.getKey(), topField, tf * similarity.idf(docFreq, numDocs));
+		}
+		Arrays.sort(scored, 0, n, ScoredTerm.BY_SCORE);
+		
+		BooleanQuery query = new BooleanQuery();
+		int qterms = Math.min(n, MoreLikeThis.DEFAULT_MAX_QUERY_TERMS);
+		for (int i = 0; i < qterms; i++) {
+			TermQuery tq = new TermQuery(new Term(fields[scored[i].field], scored[i].term));
+			tq.setBoost(fieldBoosts[scored[i].field] * scored[i].score / scored[0].score);
+			query.add(tq, BooleanClause.Occur.SHOULD);
+		}
+		return query;
+	}
+	
+	/**
+	 * @return the document frequency of a term in a field, looked up once per document
+	 */
+	private int docFreq(String term, int field) throws IOException {
+		int df[] = docFreqs.get(term);
+		if (df == null) {
+			df = new int[fields.length];
+			Arrays.fill(df, -1);
+			docFreqs.put(term, df);
+		}
+		if (df[field] == -1) {
+			df[field] = in.docFreq(new Term(fields[field], term));
+		}
+		return df[field];
+	}
+	
+	private boolean isNoiseWord(String term) {
+		return term.length() < minWordLen || stopwords.contains(term);
+	}
+	
+	/**
+	 * Term of the query with its score.
+	 */
+	private static class ScoredTerm {
+		static final Comparator<ScoredTerm> BY_SCORE = new Comparator<ScoredTerm>() {
+			public int compare(ScoredTerm a, ScoredTerm b) {
+				return Float.compare(b.score, a.score);
+			}
+		};
+		
+		final String term;
+		final int field;
+		final float score;
+		
+		ScoredTerm(String term, int field, float score) {
+			this.term = term;
+			this.field = field;
+			this.score = score;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing hash map from a pair of ids to a double value, used to 
+ * aggregate pairwise similarities without an object per entry.
+ * 
+ * The pair is packed into one long <code>(id1 &lt;&lt; 32 | id2)</code>, so 
+ * (a,b) and (b,a) are different keys. The packed key is mixed with the 
+ * MurmurHash3 finalizer before probing linearly. Ids must not be negative.
+ * 
+ * Instances are not thread-safe.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class PairAccumulator {
+	private final static long EMPTY = -1L;
+	private final static float MAX_LOAD = 0.6f;
+	
+	private long[] keys;
+	private double[] values;
+	private int size = 0;
+	private int mask;
+	private int threshold;
+	
+	/**
+	 * Create an accumulator with a default initial capacity.
+	 */
+	public PairAccumulator() {
+		this(16);
+	}
+	
+	/**
+	 * @param expected the expected number of pairs
+	 */
+	public PairAccumulator(int expected) {
+		allocate(Integer.highestOneBit(Math.max(4, (int)(expected / MAX_LOAD)) - 1) << 1);
+	}
+	
+	/**
+	 * Add a value to the value of a pair. Pairs not yet in the map start at 0.
+	 *
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @param value the value to add
+	 * @return the new value of the pair
+	 */
+	public double add(int id1, int id2, double value) {
+		int slot = slot(key(id1, id2));
+		return values[slot] += value;
+	}
+	
+	/**
+	 * Set the value of a pair.
+	 *
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @param value the value
+	 */
+	public void put(int id1, int id2, double value) {
+		values[slot(key(id1, id2))] = value;
+	}
+	
+	/**
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @param defaultValue the value to return if the pair is not in the map
+	 * @return the value of the pair or the default value
+	 */
+	public double get(int id1, int id2, double defaultValue) {
+		long key = key(id1, id2);
+		for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @return whether the pair is in the map
+	 */
+	public boolean contains(int id1, int id2) {
+		long key = key(id1, id2);
+		for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the number of pairs in the map
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Remove all pairs. The capacity is kept.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+	
+	/**
+	 * @return a cursor over all pairs in unspecified order
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+	
+	/**
+	 * Find the slot of a key, inserting it with value 0 if required.
+	 */
+	private int slot(long key) {
+		int i = mix(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		if (size >= threshold) {
+			rehash(keys.length << 1);
+			return slot(key);
+		}
+		keys[i] = key;
+		size++;
+		return i;
+	}
+	
+	private void rehash(int capacity) {
+		long oldKeys[] = keys;
+		double oldValues[] = values;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != EMPTY) {
+				int i = mix(oldKeys[j]) & mask;
+				while (keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		threshold = (int)(capacity * MAX_LOAD);
+	}
+	
+	/**
+	 * Pack two ids into one key.
+	 *
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @return the key
+	 */
+	public static long key(int id1, int id2) {
+		return ((long)id1 << 32) | (id2 & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * MurmurHash3 64 bit finalizer.
+	 */
+	private static int mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return (int)k;
+	}
+	
+	/**
+	 * Iterates over the pairs of the map. The map must not be modified while 
+	 * iterating, except for changing values through {@link PairAccumulator#add(int, int, double)} 
+	 * or {@link PairAccumulator#put(int, int, double)} on pairs already in the map.
+	 */
+	public class Cursor {
+		private int slot = -1;
+		
+		/**
+		 * Move to the next pair.
+		 *
+		 * @return false if there are no more pairs
+		 */
+		public boolean next() {
+			while (++slot < keys.length) {
+				if (keys[slot] != EMPTY) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * @return the first id of the current pair
+		 */
+		public int id1() {
+			check();
+			return (int)(keys[slot] >>> 32);
+		}
+		
+		/**
+		 * @return the second id of the current pair
+		 */
+		public int id2() {
+			check();
+			return (int)keys[slot];
+		}
+		
+		/**
+		 * @return the value of the current pair
+		 */
+		public double value() {
+			check();
+			return values[slot];
+		}
+		
+		private void check() {
+			if (slot < 0 || slot >= keys.length) {
+				throw new NoSuchElementException();
+			}
+		}
+	}
+}
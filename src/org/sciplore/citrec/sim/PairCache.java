@@ -0,0 +1,148 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+/**
+ * Thread-safe bounded cache from a pair of ids to a double value.
+ * 
+ * The cache is split into stripes, each a {@link PairAccumulator} guarded by 
+ * its own lock, so concurrent workers rarely wait for each other. When a 
+ * stripe reaches its share of the maximum size it is cleared completely. This 
+ * keeps the eviction free of per-entry bookkeeping; entries that are used 
+ * often are back in the cache right after the next miss.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class PairCache {
+	private final Stripe[] stripes;
+	private final int stripeMask;
+	private final int stripeSize;
+	
+	/**
+	 * @param maxSize the maximum number of cached pairs
+	 * @param concurrency the expected number of concurrently accessing threads
+	 */
+	public PairCache(int maxSize, int concurrency) {
+		int n = Integer.highestOneBit(Math.max(1, concurrency * 4) - 1) << 1;
+		stripes = new Stripe[n];
+		stripeMask = n - 1;
+		stripeSize = Math.max(1, maxSize / n);
+		for (int i = 0; i < n; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+	
+	/**
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @return the cached value or {@link Double#NaN} if the pair is not cached
+	 */
+	public double get(int id1, int id2) {
+		Stripe s = stripe(id1, id2);
+		synchronized (s) {
+			double v = s.values.get(id1, id2, Double.NaN);
+			if (Double.isNaN(v)) {
+				s.misses++;
+			} else {
+				s.hits++;
+			}
+			return v;
+		}
+	}
+	
+	/**
+	 * Cache the value of a pair.
+	 *
+	 * @param id1 the first id
+	 * @param id2 the second id
+	 * @param value the value
+	 */
+	public void put(int id1, int id2, double value) {
+		Stripe s = stripe(id1, id2);
+		synchronized (s) {
+			if (s.values.size() >= stripeSize) {
+				s.values.clear();
+				s.evictions++;
+			}
+			s.values.put(id1, id2, value);
+		}
+	}
+	
+	/**
+	 * @return the number of lookups that found a cached value
+	 */
+	public long hits() {
+		long n = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				n += s.hits;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * @return the number of lookups that did not find a cached value
+	 */
+	public long misses() {
+		long n = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				n += s.misses;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * @return the number of times a stripe was cleared because it was full
+	 */
+	public long evictions() {
+		long n = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				n += s.evictions;
+			}
+		}
+		return n;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		long hits = hits();
+		long misses = misses();
+		return "hits: " + hits + ", misses: " + misses + ", hit rate: " + (hits + misses > 0 ? (double)hits / (hits + misses) : 0) + ", evictions: " + evictions();
+	}
+	
+	private Stripe stripe(int id1, int id2) {
+		int h = id1 * 0x9E3779B9 + id2;
+		return stripes[(h ^ (h >>> 16)) & stripeMask];
+	}
+	
+	private static class Stripe {
+		final PairAccumulator values = new PairAccumulator();
+		long hits = 0;
+		long misses = 0;
+		long evictions = 0;
+	}
+}
@@ -0,0 +1,64 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Sink for the similarities computed by a measure, one instance per output 
+ * table.
+ * 
+ * Implementations are thread-safe. All methods are synchronized on the 
+ * writer, so a worker can keep the rows of one document together by 
+ * synchronizing on the writer while adding them.
+ *
+ * @see SimilarityWriters
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public interface SimilarityWriter {
+	/**
+	 * Add a similarity value.
+	 *
+	 * @param document1 the first document
+	 * @param document2 the second document
+	 * @param value the similarity
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	void add(int document1, int document2, double value) throws SQLException, IOException;
+	
+	/**
+	 * Write all pending values.
+	 *
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	void flush() throws SQLException, IOException;
+	
+	/**
+	 * Write all pending values and release the resources of the writer.
+	 *
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	void close() throws SQLException, IOException;
+}
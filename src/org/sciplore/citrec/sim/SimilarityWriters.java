@@ -0,0 +1,150 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Creates the similarity writer configured by the property 
+ * <code>simWriter</code>:
+ * 
+ * <ul>
+ * <li><code>jdbc</code>: batched inserts (default)</li>
+ * <li><code>loaddata</code>: staging files loaded with <code>LOAD DATA LOCAL INFILE</code></li>
+ * <li><code>binary</code>: binary files <code>&lt;table&gt;.bin</code> instead of the database</li>
+ * <li><code>topk</code>: {@link TopKStore} files <code>&lt;table&gt;.topk</code> instead of the database</li>
+ * </ul>
+ * 
+ * The rows are written when <code>simWriter.batchSize</code> rows are 
+ * pending or <code>simWriter.flushInterval</code> milliseconds have passed. 
+ * Files are placed in <code>simWriter.dir</code>.
+ * 
+ * The database writers create their table and disable its keys while 
+ * writing, the keys are enabled again when the writer is closed. The file 
+ * writers leave the database untouched. Without <code>replace</code> the 
+ * binary writer appends to an existing file, the store writer refuses to 
+ * overwrite an existing store.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class SimilarityWriters {
+	/**
+	 * Create the configured similarity writer for a table.
+	 *
+	 * @param p the properties
+	 * @param db the database connection
+	 * @param table the table with the columns document1, document2 and value
+	 * @param replace whether an existing table or file is replaced, otherwise the rows are appended to it
+	 * @return the writer
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error or if <code>replace</code> is false and a 
+	 * {@link TopKStore} file, which cannot be appended to, already exists
+	 */
+	public static SimilarityWriter open(Properties p, Connection db, String table, boolean replace) throws SQLException, IOException {
+		String type = p.getProperty("simWriter", "jdbc");
+		long flushInterval = Long.parseLong(p.getProperty("simWriter.flushInterval", "0"));
+		File dir = dir(p);
+		if (type.equals("jdbc")) {
+			return new JdbcSimilarityWriter(db, table, replace, batchSize(p, 1000), flushInterval);
+		} else if (type.equals("loaddata")) {
+			return new LoadDataSimilarityWriter(db, table, replace, dir, batchSize(p, 1000000), flushInterval);
+		} else if (type.equals("binary")) {
+			return new BinarySimilarityWriter(new File(dir, table + ".bin"), !replace, batchSize(p, 65536), flushInterval);
+		} else if (type.equals("topk")) {
+			File file = TopKStore.file(dir, table);
+			if (!replace && file.exists()) {
+				throw new IOException("Cannot append to the store " + file + ", remove it first");
+			}
+			return new TopKStoreWriter(file, batchSize(p, 65536), flushInterval);
+		}
+		throw new IllegalArgumentException("Unknown similarity writer " + type);
+	}
+	
+	/**
+	 * @param p the properties
+	 * @return whether the configured writer writes into the database
+	 */
+	public static boolean database(Properties p) {
+		String type = p.getProperty("simWriter", "jdbc");
+		return type.equals("jdbc") || type.equals("loaddata");
+	}
+	
+	/**
+	 * Create a similarity table if it does not exist and disable its keys.
+	 *
+	 * @param db the database connection
+	 * @param table the name of the table
+	 * @param replace whether an existing table is dropped
+	 * @throws SQLException on database error
+	 */
+	static void createTable(Connection db, String table, boolean replace) throws SQLException {
+		Statement stmt = db.createStatement();
+		try {
+			if (replace) {
+				stmt.execute("DROP TABLE IF EXISTS `" + table + "`");
+			}
+			stmt.execute("CREATE TABLE IF NOT EXISTS `" + table + "` (" +
+					"`document1` int(11) NOT NULL," +
+					"`document2` int(11) NOT NULL," +
+					"`value` double NOT NULL," +
+					"KEY `document1` (`document1`)," +
+					"KEY `document2` (`document2`)" +
+					") ENGINE=MyISAM DEFAULT CHARSET=utf8;");
+			stmt.execute("ALTER TABLE `" + table + "` DISABLE KEYS");
+		} finally {
+			stmt.close();
+		}
+	}
+	
+	/**
+	 * Enable the keys of a similarity table and rebuild its indexes.
+	 *
+	 * @param db the database connection
+	 * @param table the name of the table
+	 * @throws SQLException on database error
+	 */
+	static void enableKeys(Connection db, String table) throws SQLException {
+		Statement stmt = db.createStatement();
+		try {
+			stmt.execute("ALTER TABLE `" + table + "` ENABLE KEYS");
+		} finally {
+			stmt.close();
+		}
+	}
+	
+	/**
+	 * @param p the properties
+	 * @return the directory of the files written instead of the database
+	 */
+	public static File dir(Properties p) {
+		return new File(p.getProperty("simWriter.dir", p.getProperty("rootDir", ".")).trim());
+	}
+	
+	private static int batchSize(Properties p, int defaultSize) {
+		String batchSize = p.getProperty("simWriter.batchSize", "").trim();
+		return batchSize.isEmpty() ? defaultSize : Integer.parseInt(batchSize);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates several double values per dense index and keeps track of the 
+ * touched indexes like {@link SparseCounter}. The values of the n-th touched 
+ * index are stored at position n, so the value arrays only grow to the 
+ * number of touched indexes instead of the capacity.
+ *
+ * Instances are not thread-safe, use one per thread.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class SparseAccumulator {
+	private final SparseCounter touched;
+	private final int[] positions;
+	private double[][] values;
+
+	/**
+	 * @param capacity the number of indexes that can be accumulated
+	 * @param numValues the number of values per index
+	 */
+	public SparseAccumulator(int capacity, int numValues) {
+		touched = new SparseCounter(capacity);
+		positions = new int[capacity];
+		values = new double[numValues][1024];
+	}
+
+	/**
+	 * Touch an index and increment its count by one.
+	 *
+	 * @param i the index
+	 * @return the position of the values of the index
+	 */
+	public int touch(int i) {
+		if (touched.count(i) == 0) {
+			positions[i] = touched.size();
+			if (touched.size() == values[0].length) {
+				for (int v = 0; v < values.length; v++) {
+					values[v] = Arrays.copyOf(values[v], touched.size() * 2);
+				}
+			}
+		}
+		touched.increment(i);
+		return positions[i];
+	}
+
+	/**
+	 * @param v the value
+	 * @param n the position
+	 * @param value the amount to add
+	 */
+	public void add(int v, int n, double value) {
+		values[v][n] += value;
+	}
+
+	/**
+	 * @param v the value
+	 * @param n the position
+	 * @return the accumulated value
+	 */
+	public double value(int v, int n) {
+		return values[v][n];
+	}
+
+	/**
+	 * @return the number of touched indexes
+	 */
+	public int size() {
+		return touched.size();
+	}
+
+	/**
+	 * @param n the position, 0 &lt;= n &lt; {@link #size()}
+	 * @return the index at the position
+	 */
+	public int index(int n) {
+		return touched.index(n);
+	}
+
+	/**
+	 * @param n the position, 0 &lt;= n &lt; {@link #size()}
+	 * @return how often the index at the position was touched
+	 */
+	public int count(int n) {
+		return touched.count(touched.index(n));
+	}
+
+	/**
+	 * Reset all values to zero.
+	 */
+	public void clear() {
+		for (double v[] : values) {
+			Arrays.fill(v, 0, touched.size(), 0);
+		}
+		touched.clear();
+	}
+}
@@ -0,0 +1,88 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+/**
+ * Counter for dense indexes that keeps track of the touched indexes, so that
+ * it can be iterated and reset in time proportional to the number of
+ * non-zero counts instead of the capacity.
+ *
+ * Instances are not thread-safe, use one per thread.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class SparseCounter {
+	private final int[] counts;
+	private final int[] touched;
+	private int size = 0;
+
+	/**
+	 * @param capacity the number of indexes that can be counted
+	 */
+	public SparseCounter(int capacity) {
+		counts = new int[capacity];
+		touched = new int[capacity];
+	}
+
+	/**
+	 * Increment the count for an index by one.
+	 *
+	 * @param i the index
+	 */
+	public void increment(int i) {
+		if (counts[i]++ == 0) {
+			touched[size++] = i;
+		}
+	}
+
+	/**
+	 * @return the number of indexes with a non-zero count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param n the position in order of first increment, 0 &lt;= n &lt; {@link #size()}
+	 * @return the index at the position
+	 */
+	public int index(int n) {
+		return touched[n];
+	}
+
+	/**
+	 * @param i the index
+	 * @return the count of the index
+	 */
+	public int count(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * Reset all counts to zero.
+	 */
+	public void clear() {
+		for (int n = 0; n < size; n++) {
+			counts[touched[n]] = 0;
+		}
+		size = 0;
+	}
+}
@@ -0,0 +1,396 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.search.DefaultSimilarity;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.sciplore.citrec.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculate the cosine similarity of TF-IDF document vectors built from the 
+ * term vectors of the Lucene index.
+ * 
+ * The term frequencies of the fields of a combination are summed per term 
+ * and weighted like Lucene's default similarity (square root of the 
+ * frequency times idf). The vectors are normalized to unit length, so the 
+ * dot product is the cosine.
+ * 
+ * The top similar documents of a document are found by accumulating the 
+ * dot products over the posting lists of its terms, the terms with the 
+ * highest possible contribution first. As soon as the sum of the possible 
+ * contributions of the remaining terms is below the k-th best partial 
+ * score, no document that has not been seen yet can enter the top list 
+ * and only the scores of the documents already seen are completed. The 
+ * result is the exact top list.
+ * 
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TermVectorCosine {
+	private static Logger logger = LoggerFactory.getLogger(TermVectorCosine.class);
+	private final static int NUM_RESULTS = 100;
+	
+	// document -> terms with normalized weights
+	private final int docOffsets[];
+	private final int docTerms[];
+	private final float docWeights[];
+	// term -> documents with normalized weights
+	private final int termOffsets[];
+	private final int postings[];
+	private final float postingWeights[];
+	// maximum weight of a term in any document
+	private final float maxWeights[];
+	
+	private TermVectorCosine(int docOffsets[], int docTerms[], float docWeights[], int termOffsets[], int postings[], float postingWeights[], float maxWeights[]) {
+		this.docOffsets = docOffsets;
+		this.docTerms = docTerms;
+		this.docWeights = docWeights;
+		this.termOffsets = termOffsets;
+		this.postings = postings;
+		this.postingWeights = postingWeights;
+		this.maxWeights = maxWeights;
+	}
+
+	/**
+	 * Calculate the term vector cosine similarities
+	 *
+	 * @param args combinations of fields to use for similarity calculations, 
+	 * the fields of a combination joined by <code>_</code>, e.g. <code>title_abstract</code>
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Properties p = Helper.getProperties();
+		int numThreads = Integer.parseInt(p.getProperty("numThreads"));
+		
+		if (args.length == 0) {
+			System.err.println("Usage: <programname> <title|abstract|text>[_<title|abstract|text>]...");
+			System.exit(-1);
+		}
+		for (String combination : args) {
+			for (String a : combination.split("_")) {
+				if (!a.equals("title") && !a.equals("abstract") && !a.equals("text")) {
+					System.err.println("Usage: <programname> <title|abstract|text>[_<title|abstract|text>]...");
+					System.exit(-1);
+				}
+			}
+		}
+
+		File rootDir = new File(p.getProperty("rootDir", "."));
+		if (!rootDir.isDirectory()) {
+			throw new Exception("rootDir is not a valid directory.");
+		}
+		
+		File indexDir = new File(p.getProperty("indexDir", rootDir + File.separator + "index"));
+		if (!indexDir.isDirectory() && !indexDir.mkdir()) {
+			throw new Exception("Could not find index directory.");
+		}
+
+		// initialize database connections begin
+		Class.forName(p.getProperty("db.driver"));
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
+		// initialize database connections end
+
+		IndexReader in = IndexReader.open(new NIOFSDirectory(indexDir));
+		int pmcIds[] = LuceneMoreLikeThis.pmcIds(in);
+
+		// one combination at a time to keep only one set of vectors in memory
+		for (String combination : args) {
+			String table = "sim_tvcos_" + combination;
+			TermVectorCosine vectors = load(in, combination.split("_"));
+			SimilarityWriter ins = SimilarityWriters.open(p, db, table, true);
+			vectors.compute(numThreads, ins, pmcIds);
+			ins.close();
+			
+			logger.info("{} done.", table);
+		}
+		
+		in.close();
+		db.close();
+	}
+	
+	/**
+	 * Build the normalized TF-IDF vectors of all documents.
+	 *
+	 * @param in the index reader
+	 * @param fields the fields whose term vectors are summed
+	 * @return the vectors
+	 * @throws IOException on I/O error
+	 */
+	public static TermVectorCosine load(IndexReader in, String fields[]) throws IOException {
+		Similarity similarity = new DefaultSimilarity();
+		Map<String, Integer> termIds = new HashMap<String, Integer>();
+		int maxDoc = in.maxDoc();
+		int docOffsets[] = new int[maxDoc + 1];
+		int docTerms[] = new int[1 << 20];
+		int freqs[] = new int[1 << 20];
+		int docFreqs[] = new int[1 << 16];
+		long buf[] = new long[1024];
+		int n = 0;
+		
+		// forward index begin
+		for (int doc = 0; doc < maxDoc; doc++) {
+			if (doc % 10000 == 0) {
+				logger.info("{} term vectors read.", doc);
+			}
+			int m = 0;
+			if (!in.isDeleted(doc)) {
+				for (String field : fields) {
+					TermFreqVector vector = in.getTermFreqVector(doc, field);
+					if (vector == null) {
+						continue;
+					}
+					String terms[] = vector.getTerms();
+					int tfs[] = vector.getTermFrequencies();
+					if (m + terms.length > buf.length) {
+						buf = Arrays.copyOf(buf, Math.max(buf.length * 2, m + terms.length));
+					}
+					for (int t = 0; t < terms.length; t++) {
+						Integer id = termIds.get(terms[t]);
+						if (id == null) {
+							id = termIds.size();
+							termIds.put(terms[t], id);
+						}
+						buf[m++] = ((long)id << 32) | tfs[t];
+					}
+				}
+			}
+			// sum the frequencies of a term over the fields
+			Arrays.sort(buf, 0, m);
+			if (n + m > docTerms.length) {
+				docTerms = Arrays.copyOf(docTerms, Math.max(docTerms.length * 2, n + m));
+				freqs = Arrays.copyOf(freqs, docTerms.length);
+			}
+			for (int i = 0; i < m; i++) {
+				int term = (int)(buf[i] >>> 32);
+				if (n > docOffsets[doc] && docTerms[n - 1] == term) {
+					freqs[n - 1] += (int)buf[i];
+				} else {
+					docTerms[n] = term;
+					freqs[n++] = (int)buf[i];
+					if (term >= docFreqs.length) {
+						docFreqs = Arrays.copyOf(docFreqs, docFreqs.length * 2);
+					}
+					docFreqs[term]++;
+				}
+			}
+			docOffsets[doc + 1] = n;
+		}
+		termIds = null;
+		buf = null;
+		// forward index end
+		
+		// weights begin
+		int numTerms = 0;
+		for (int i = 0; i < n; i++) {
+			numTerms = Math.max(numTerms, docTerms[i] + 1);
+		}
+		int numDocs = in.numDocs();
+		float idf[] = new float[numTerms];
+		for (int t = 0; t < numTerms; t++) {
+			idf[t] = similarity.idf(docFreqs[t], numDocs);
+		}
+		float docWeights[] = new float[n];
+		for (int doc = 0; doc < maxDoc; doc++) {
+			double norm = 0;
+			for (int i = docOffsets[doc]; i < docOffsets[doc + 1]; i++) {
+				docWeights[i] = similarity.tf(freqs[i]) * idf[docTerms[i]];
+				norm += (double)docWeights[i] * docWeights[i];
+			}
+			norm = Math.sqrt(norm);
+			for (int i = docOffsets[doc]; i < docOffsets[doc + 1]; i++) {
+				docWeights[i] /= norm;
+			}
+		}
+		freqs = null;
+		docTerms = Arrays.copyOf(docTerms, n);
+		// weights end
+		
+		// inverted index begin
+		int termOffsets[] = new int[numTerms + 1];
+		for (int i = 0; i < n; i++) {
+			termOffsets[docTerms[i] + 1]++;
+		}
+		for (int t = 0; t < numTerms; t++) {
+			termOffsets[t + 1] += termOffsets[t];
+		}
+		int fill[] = Arrays.copyOf(termOffsets, numTerms);
+		int postings[] = new int[n];
+		float postingWeights[] = new float[n];
+		float maxWeights[] = new float[numTerms];
+		for (int doc = 0; doc < maxDoc; doc++) {
+			for (int i = docOffsets[doc]; i < docOffsets[doc + 1]; i++) {
+				int t = docTerms[i];
+				postings[fill[t]] = doc;
+				postingWeights[fill[t]++] = docWeights[i];
+				maxWeights[t] = Math.max(maxWeights[t], docWeights[i]);
+			}
+		}
+		// inverted index end
+		logger.info("{} documents with {} terms and {} postings.", new Object[] { numDocs, numTerms, n });
+		
+		return new TermVectorCosine(docOffsets, docTerms, docWeights, termOffsets, postings, postingWeights, maxWeights);
+	}
+	
+	/**
+	 * Find the top similar documents of all documents.
+	 *
+	 * @param numThreads the number of worker threads
+	 * @param ins the insert for the results
+	 * @param pmcIds the pmcIds by document number
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	public void compute(int numThreads, final SimilarityWriter ins, final int pmcIds[]) throws SQLException, IOException {
+		final int maxDoc = docOffsets.length - 1;
+		final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+			protected Scratch initialValue() {
+				return new Scratch(maxDoc);
+			}
+		};
+		final AtomicInteger cnt = new AtomicInteger();
+		
+		BlockTask.run(numThreads, maxDoc, new BlockTask.Body() {
+			public void process(int doc) throws SQLException, IOException {
+				Scratch s = scratch.get();
+				TopK docs = topK(doc, s);
+				synchronized (ins) { // keep the rows of one document together
+					for (int n = 0; n < docs.size(); n++) {
+						ins.add(pmcIds[doc], pmcIds[docs.id(n)], docs.score(n));
+					}
+				}
+				int c = cnt.incrementAndGet();
+				if (c % 10000 == 0) {
+					logger.info("{} documents processed.", c);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Find the top similar documents of a document.
+	 *
+	 * @param doc the document number
+	 * @param s the scratch space of the thread
+	 * @return the top list, sorted
+	 */
+	private TopK topK(int doc, Scratch s) {
+		int from = docOffsets[doc];
+		int q = docOffsets[doc + 1] - from;
+		s.results.clear();
+		if (q == 0) {
+			return s.results;
+		}
+		
+		// order the terms by their maximum contribution, the highest first
+		if (q > s.order.length) {
+			s.order = new long[Math.max(q, s.order.length * 2)];
+		}
+		double remaining = 0;
+		for (int i = 0; i < q; i++) {
+			float bound = docWeights[from + i] * maxWeights[docTerms[from + i]];
+			s.order[i] = ((long)Float.floatToIntBits(bound) << 32) | i; // the bound is not negative
+			remaining += bound;
+		}
+		Arrays.sort(s.order, 0, q);
+		
+		boolean addNew = true;
+		float maxPartial = 0;
+		double nextCheck = remaining;
+		for (int j = q - 1; j >= 0; j--) {
+			int i = from + (int)s.order[j];
+			int t = docTerms[i];
+			float w = docWeights[i];
+			remaining -= w * maxWeights[t];
+			for (int k = termOffsets[t]; k < termOffsets[t + 1]; k++) {
+				int doc2 = postings[k];
+				if (doc2 == doc) {
+					continue;
+				}
+				if (s.scores[doc2] == 0) {
+					if (!addNew) {
+						continue;
+					}
+					s.touched[s.numTouched++] = doc2;
+				}
+				s.scores[doc2] += w * postingWeights[k];
+				if (s.scores[doc2] > maxPartial) {
+					maxPartial = s.scores[doc2];
+				}
+			}
+			
+			// the k-th best partial score is a lower bound of the final k-th best score
+			if (addNew && s.numTouched >= NUM_RESULTS && remaining < maxPartial && remaining <= nextCheck) {
+				s.threshold.clear();
+				for (int n = 0; n < s.numTouched; n++) {
+					s.threshold.offer(s.touched[n], s.scores[s.touched[n]]);
+				}
+				// small slack for rounding errors of the float sums
+				if (remaining * (1 + 1e-5) < s.threshold.threshold()) {
+					addNew = false;
+				} else {
+					nextCheck = remaining * 0.9;
+				}
+			}
+		}
+		
+		for (int n = 0; n < s.numTouched; n++) {
+			int doc2 = s.touched[n];
+			s.results.offer(doc2, s.scores[doc2]);
+			s.scores[doc2] = 0;
+		}
+		s.numTouched = 0;
+		s.results.sort();
+		return s.results;
+	}
+	
+	/**
+	 * Scratch space of a worker thread.
+	 */
+	private static class Scratch {
+		// partial scores by document, 0 if not seen
+		final float scores[];
+		final int touched[];
+		int numTouched = 0;
+		long order[] = new long[1024];
+		final TopK threshold = new TopK(NUM_RESULTS);
+		final TopK results = new TopK(NUM_RESULTS);
+		
+		Scratch(int maxDoc) {
+			scores = new float[maxDoc];
+			touched = new int[maxDoc];
+		}
+	}
+}
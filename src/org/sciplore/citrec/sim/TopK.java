@@ -0,0 +1,202 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.util.Arrays;
+
+/**
+ * Bounded heap keeping the <code>k</code> best scored ids, used to collect 
+ * the top similar documents of a document without boxing.
+ * 
+ * An id is better than another if its score is higher. Ties are broken by 
+ * the lower id, so the result does not depend on the order of the offers. 
+ * The entries are kept in a min-heap with the worst entry at the root. 
+ * After {@link #sort()} the entries are ordered by rank.
+ * 
+ * Instances are not thread-safe.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TopK {
+	private final int k;
+	private int[] ids;
+	private double[] scores;
+	private int size = 0;
+	private boolean sorted = false;
+	
+	/**
+	 * @param k the maximum number of entries
+	 */
+	public TopK(int k) {
+		this.k = k;
+		ids = new int[Math.min(k, 8)];
+		scores = new double[ids.length];
+	}
+	
+	/**
+	 * Offer an entry. It is kept if there are less than <code>k</code> entries 
+	 * or if it is better than the worst entry, which is dropped then.
+	 *
+	 * @param id the id
+	 * @param score the score
+	 * @return whether the entry was kept
+	 */
+	public boolean offer(int id, double score) {
+		if (sorted) {
+			heapify();
+		}
+		if (size < k) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, Math.min(k, size * 2));
+				scores = Arrays.copyOf(scores, ids.length);
+			}
+			ids[size] = id;
+			scores[size] = score;
+			siftUp(size++);
+			return true;
+		}
+		if (k == 0 || !better(score, id, scores[0], ids[0])) {
+			return false;
+		}
+		ids[0] = id;
+		scores[0] = score;
+		siftDown(0);
+		return true;
+	}
+	
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return whether <code>k</code> entries are kept
+	 */
+	public boolean isFull() {
+		return size == k;
+	}
+	
+	/**
+	 * @return the score of the worst entry if the heap is full, otherwise negative infinity
+	 */
+	public double threshold() {
+		if (size < k) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return sorted ? scores[size - 1] : scores[0];
+	}
+	
+	/**
+	 * Order the entries by rank, the best first.
+	 */
+	public void sort() {
+		if (sorted) {
+			return;
+		}
+		// heap sort, the worst entry is moved to the end
+		for (int n = size - 1; n > 0; n--) {
+			swap(0, n);
+			siftDown(0, n);
+		}
+		sorted = true;
+	}
+	
+	/**
+	 * @param n the position, the rank after {@link #sort()}
+	 * @return the id at the position
+	 */
+	public int id(int n) {
+		return ids[n];
+	}
+	
+	/**
+	 * @param n the position, the rank after {@link #sort()}
+	 * @return the score at the position
+	 */
+	public double score(int n) {
+		return scores[n];
+	}
+	
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		size = 0;
+		sorted = false;
+	}
+	
+	private void heapify() {
+		for (int n = size / 2 - 1; n >= 0; n--) {
+			siftDown(n);
+		}
+		sorted = false;
+	}
+	
+	private void siftUp(int n) {
+		while (n > 0) {
+			int parent = (n - 1) >>> 1;
+			if (!better(scores[parent], ids[parent], scores[n], ids[n])) {
+				break;
+			}
+			swap(n, parent);
+			n = parent;
+		}
+	}
+	
+	private void siftDown(int n) {
+		siftDown(n, size);
+	}
+	
+	private void siftDown(int n, int end) {
+		while (true) {
+			int child = 2 * n + 1;
+			if (child >= end) {
+				break;
+			}
+			if (child + 1 < end && better(scores[child], ids[child], scores[child + 1], ids[child + 1])) {
+				child++;
+			}
+			if (!better(scores[n], ids[n], scores[child], ids[child])) {
+				break;
+			}
+			swap(n, child);
+			n = child;
+		}
+	}
+	
+	private void swap(int a, int b) {
+		int id = ids[a];
+		ids[a] = ids[b];
+		ids[b] = id;
+		double score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+	}
+	
+	/**
+	 * @return whether the first entry ranks before the second
+	 */
+	private static boolean better(double score1, int id1, double score2, int id2) {
+		return score1 > score2 || (score1 == score2 && id1 < id2);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+/**
+ * Lucene collector feeding the hits of a query into a {@link TopK}. The 
+ * query document itself can be excluded, so exactly <code>k</code> other 
+ * documents are collected instead of asking for <code>k + 1</code> hits.
+ * 
+ * The ids in the top list are the document numbers of the top level reader.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TopKCollector extends Collector {
+	private final TopK results;
+	private int exclude = -1;
+	private int docBase;
+	private Scorer scorer;
+	
+	/**
+	 * @param results the top list to fill, it is cleared by {@link #reset(int)}
+	 */
+	public TopKCollector(TopK results) {
+		this.results = results;
+	}
+	
+	/**
+	 * Prepare the collector for the next query.
+	 *
+	 * @param exclude the document number to skip or -1
+	 */
+	public void reset(int exclude) {
+		this.exclude = exclude;
+		results.clear();
+	}
+	
+	/**
+	 * @return the collected top list
+	 */
+	public TopK results() {
+		return results;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#setScorer(org.apache.lucene.search.Scorer)
+	 */
+	public void setScorer(Scorer scorer) throws IOException {
+		this.scorer = scorer;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#collect(int)
+	 */
+	public void collect(int doc) throws IOException {
+		doc += docBase;
+		if (doc != exclude) {
+			results.offer(doc, scorer.score());
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#setNextReader(org.apache.lucene.index.IndexReader, int)
+	 */
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.docBase = docBase;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.apache.lucene.search.Collector#acceptsDocsOutOfOrder()
+	 */
+	public boolean acceptsDocsOutOfOrder() {
+		return true;
+	}
+}
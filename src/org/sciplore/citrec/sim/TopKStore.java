@@ -0,0 +1,227 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only view of a top-k similarity file, the binary counterpart of a 
+ * <code>sim_*</code> table written by {@link TopKStoreWriter}.
+ * 
+ * The file consists of
+ * 
+ * <ul>
+ * <li>a header: magic number, version, number of documents, padding and 
+ * number of entries (int, int, int, int, long)</li>
+ * <li>the index: per document1, sorted ascending, the pmcId, the number of 
+ * entries and the number of the first entry (int, int, long)</li>
+ * <li>the entries: document2 and value (int, double), grouped by document1 
+ * and sorted by rank, i.e. descending value and ascending document2 for 
+ * equal values</li>
+ * </ul>
+ * 
+ * The file is memory mapped, entries are read directly from the mapping 
+ * without copying. The entries are mapped in segments of 1.5 GB, so files 
+ * larger than 2 GB are supported. An opened store is safe for concurrent 
+ * reads.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TopKStore {
+	static final int MAGIC = 0x43544F50; // "CTOP"
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 24;
+	static final int INDEX_ENTRY_SIZE = 16;
+	static final int ENTRY_SIZE = 12;
+	// entries per mapped segment
+	static final int SEGMENT_SHIFT = 27;
+	static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+	
+	private final int numDocs;
+	private final long numEntries;
+	private final MappedByteBuffer index;
+	private final MappedByteBuffer entries[];
+	
+	private TopKStore(int numDocs, long numEntries, MappedByteBuffer index, MappedByteBuffer entries[]) {
+		this.numDocs = numDocs;
+		this.numEntries = numEntries;
+		this.index = index;
+		this.entries = entries;
+	}
+	
+	/**
+	 * @param dir the directory of the store files
+	 * @param table the name of the similarity table
+	 * @return the file of the store of the table
+	 */
+	public static File file(File dir, String table) {
+		return new File(dir, table + ".topk");
+	}
+	
+	/**
+	 * Map a store file into memory.
+	 *
+	 * @param file the store file
+	 * @return the store
+	 * @throws IOException on I/O error or if the file is no store
+	 */
+	public static TopKStore open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel ch = raf.getChannel();
+			MappedByteBuffer header = ch.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException(file + " is no top-k store.");
+			}
+			int numDocs = header.getInt(8);
+			long numEntries = header.getLong(16);
+			MappedByteBuffer index = ch.map(MapMode.READ_ONLY, HEADER_SIZE, (long)numDocs * INDEX_ENTRY_SIZE);
+			MappedByteBuffer entries[] = map(ch, MapMode.READ_ONLY, entriesOffset(numDocs), numEntries);
+			return new TopKStore(numDocs, numEntries, index, entries);
+		} finally {
+			raf.close(); // the mappings stay valid
+		}
+	}
+	
+	/**
+	 * @param numDocs the number of documents in the index
+	 * @return the position of the first entry in the file
+	 */
+	static long entriesOffset(int numDocs) {
+		return HEADER_SIZE + (long)numDocs * INDEX_ENTRY_SIZE;
+	}
+	
+	/**
+	 * Map the entries of a store in segments.
+	 */
+	static MappedByteBuffer[] map(FileChannel ch, MapMode mode, long position, long numEntries) throws IOException {
+		MappedByteBuffer segments[] = new MappedByteBuffer[(int)((numEntries + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+		for (int s = 0; s < segments.length; s++) {
+			long first = (long)s << SEGMENT_SHIFT;
+			long size = Math.min(numEntries - first, 1L << SEGMENT_SHIFT) * ENTRY_SIZE;
+			segments[s] = ch.map(mode, position + first * ENTRY_SIZE, size);
+		}
+		return segments;
+	}
+	
+	/**
+	 * @return the number of documents with entries
+	 */
+	public int numDocuments() {
+		return numDocs;
+	}
+	
+	/**
+	 * @return the total number of entries
+	 */
+	public long numEntries() {
+		return numEntries;
+	}
+	
+	/**
+	 * @param i the position of a document in the index
+	 * @return the pmcId of the document
+	 */
+	public int document(int i) {
+		return index.getInt(i * INDEX_ENTRY_SIZE);
+	}
+	
+	/**
+	 * @param document the pmcId of a document
+	 * @return the position of the document in the index or a negative value if it has no entries
+	 */
+	public int indexOf(int document) {
+		int low = 0;
+		int high = numDocs - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int d = document(mid);
+			if (d < document) {
+				low = mid + 1;
+			} else if (d > document) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+	
+	/**
+	 * @param i the position of a document in the index
+	 * @return the number of entries of the document
+	 */
+	public int size(int i) {
+		return index.getInt(i * INDEX_ENTRY_SIZE + 4);
+	}
+	
+	/**
+	 * @param i the position of a document in the index
+	 * @param rank the rank starting at 0
+	 * @return the pmcId of the document at the rank
+	 */
+	public int entryDocument(int i, int rank) {
+		long e = index.getLong(i * INDEX_ENTRY_SIZE + 8) + rank;
+		return entries[(int)(e >>> SEGMENT_SHIFT)].getInt((int)(e & SEGMENT_MASK) * ENTRY_SIZE);
+	}
+	
+	/**
+	 * @param i the position of a document in the index
+	 * @param rank the rank starting at 0
+	 * @return the similarity of the document at the rank
+	 */
+	public double entryScore(int i, int rank) {
+		long e = index.getLong(i * INDEX_ENTRY_SIZE + 8) + rank;
+		return entries[(int)(e >>> SEGMENT_SHIFT)].getDouble((int)(e & SEGMENT_MASK) * ENTRY_SIZE + 4);
+	}
+	
+	/**
+	 * Copy the top-k entries of a document, the equivalent of 
+	 * <code>SELECT document2, value FROM sim_* WHERE document1=? ORDER BY value DESC LIMIT k</code>.
+	 *
+	 * @param document the pmcId of the document
+	 * @param k the maximum number of entries
+	 * @param documents receives the pmcIds of the similar documents, may be null
+	 * @param scores receives the similarities, may be null
+	 * @return the number of entries copied
+	 */
+	public int get(int document, int k, int documents[], double scores[]) {
+		int i = indexOf(document);
+		if (i < 0) {
+			return 0;
+		}
+		int n = Math.min(k, size(i));
+		for (int r = 0; r < n; r++) {
+			if (documents != null) {
+				documents[r] = entryDocument(i, r);
+			}
+			if (scores != null) {
+				scores[r] = entryScore(i, r);
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+	CITREC - Evaluation Framework
+    Copyright (C) 2015 SciPlore <team@sciplore.org>
+    Copyright (C) 2015 Mario Lipinski <lipinski@sciplore.org>
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+*/
+
+package org.sciplore.citrec.sim;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.sciplore.citrec.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes similarities to a {@link TopKStore} file.
+ * 
+ * The rows are spooled to <code>&lt;file&gt;.spool</code> in the format of 
+ * the {@link BinarySimilarityWriter} while the measure runs. On close the 
+ * spool is read twice: first to count the entries per document1, then to 
+ * scatter the entries to their place in the store. Finally the entries of 
+ * each document are sorted by rank and the spool is deleted. Rows may be 
+ * added in any order.
+ * 
+ * The main method converts existing <code>sim_*</code> tables to stores in 
+ * <code>simWriter.dir</code>.
+ *
+ * @author Mario Lipinski <a href="mailto:lipinski@sciplore.org">lipinski@sciplore.org</a>
+ */
+public class TopKStoreWriter extends BinarySimilarityWriter {
+	private static Logger logger = LoggerFactory.getLogger(TopKStoreWriter.class);
+	private static final int ROW_SIZE = 16;
+	
+	private final File file;
+	private final File spool;
+
+	/**
+	 * @param file the store file, it is overwritten
+	 * @param batchSize the number of rows after which the spool buffer is written
+	 * @param flushInterval the time in milliseconds after which pending rows are written, 0 for no limit
+	 * @throws IOException on I/O error
+	 */
+	public TopKStoreWriter(File file, int batchSize, long flushInterval) throws IOException {
+		this(file, new File(file.getPath() + ".spool"), batchSize, flushInterval);
+	}
+	
+	private TopKStoreWriter(File file, File spool, int batchSize, long flushInterval) throws IOException {
+		super(spool, batchSize, flushInterval);
+		this.file = file;
+		this.spool = spool;
+	}
+	
+	/**
+	 * Build the store from the spooled rows and delete the spool.
+	 *
+	 * @throws IOException on I/O error
+	 */
+	protected void release() throws IOException {
+		super.release();
+		build(spool, file);
+		spool.delete();
+	}
+	
+	/**
+	 * Build a store from a file of the {@link BinarySimilarityWriter}.
+	 *
+	 * @param rows the file with the rows
+	 * @param file the store file, it is overwritten
+	 * @throws IOException on I/O error
+	 */
+	public static void build(File rows, File file) throws IOException {
+		long numEntries = rows.length() / ROW_SIZE;
+		
+		// count the entries per document begin
+		// runs of equal document1 as (document1, length), the rows of one document are usually consecutive
+		long runs[] = new long[1 << 16];
+		int numRuns = 0;
+		DataInputStream in = open(rows);
+		int prev = 0;
+		int len = 0;
+		for (long r = 0; r < numEntries; r++) {
+			int document1 = in.readInt();
+			in.readInt();
+			in.readDouble();
+			if (len > 0 && document1 == prev) {
+				len++;
+				continue;
+			}
+			if (len > 0) {
+				if (numRuns == runs.length) {
+					runs = Arrays.copyOf(runs, numRuns * 2);
+				}
+				runs[numRuns++] = pack(prev, len);
+			}
+			prev = document1;
+			len = 1;
+		}
+		in.close();
+		if (len > 0) {
+			if (numRuns == runs.length) {
+				runs = Arrays.copyOf(runs, numRuns + 1);
+			}
+			runs[numRuns++] = pack(prev, len);
+		}
+		Arrays.sort(runs, 0, numRuns);
+		
+		int numDocs = 0;
+		int docIds[] = new int[numRuns];
+		int counts[] = new int[numRuns];
+		for (int i = 0; i < numRuns; i++) {
+			int document1 = (int)(runs[i] >> 32);
+			if (numDocs == 0 || docIds[numDocs - 1] != document1) {
+				docIds[numDocs++] = document1;
+			}
+			counts[numDocs - 1] += (int)runs[i];
+		}
+		runs = null;
+		// count the entries per document end
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long entriesOffset = TopKStore.entriesOffset(numDocs);
+			raf.setLength(0);
+			raf.setLength(entriesOffset + numEntries * TopKStore.ENTRY_SIZE);
+			
+			// header and index begin
+			long next[] = new long[numDocs];
+			MappedByteBuffer index = raf.getChannel().map(MapMode.READ_WRITE, 0, entriesOffset);
+			index.putInt(TopKStore.MAGIC);
+			index.putInt(TopKStore.VERSION);
+			index.putInt(numDocs);
+			index.putInt(0);
+			index.putLong(numEntries);
+			long offset = 0;
+			int maxCount = 0;
+			for (int i = 0; i < numDocs; i++) {
+				index.putInt(docIds[i]);
+				index.putInt(counts[i]);
+				index.putLong(offset);
+				next[i] = offset;
+				offset += counts[i];
+				maxCount = Math.max(maxCount, counts[i]);
+			}
+			index.force();
+			// header and index end
+			
+			// scatter the entries begin
+			MappedByteBuffer entries[] = TopKStore.map(raf.getChannel(), MapMode.READ_WRITE, entriesOffset, numEntries);
+			in = open(rows);
+			for (long r = 0; r < numEntries; r++) {
+				int i = Arrays.binarySearch(docIds, 0, numDocs, in.readInt());
+				long e = next[i]++;
+				MappedByteBuffer segment = entries[(int)(e >>> TopKStore.SEGMENT_SHIFT)];
+				int pos = (int)(e & TopKStore.SEGMENT_MASK) * TopKStore.ENTRY_SIZE;
+				segment.putInt(pos, in.readInt());
+				segment.putDouble(pos + 4, in.readDouble());
+			}
+			in.close();
+			// scatter the entries end
+			
+			// sort the entries of each document by rank begin
+			// the values of a document are replaced by their descending rank among its distinct values, so (rank, document2) fits into a long key
+			long keys[] = new long[maxCount];
+			double values[] = new double[maxCount];
+			offset = 0;
+			for (int i = 0; i < numDocs; i++) {
+				for (int n = 0; n < counts[i]; n++) {
+					long e = offset + n;
+					MappedByteBuffer segment = entries[(int)(e >>> TopKStore.SEGMENT_SHIFT)];
+					int pos = (int)(e & TopKStore.SEGMENT_MASK) * TopKStore.ENTRY_SIZE;
+					values[n] = segment.getDouble(pos + 4);
+				}
+				Arrays.sort(values, 0, counts[i]);
+				int numValues = 0;
+				for (int n = 0; n < counts[i]; n++) {
+					if (numValues == 0 || Double.compare(values[numValues - 1], values[n]) != 0) {
+						values[numValues++] = values[n];
+					}
+				}
+				for (int n = 0; n < counts[i]; n++) {
+					long e = offset + n;
+					MappedByteBuffer segment = entries[(int)(e >>> TopKStore.SEGMENT_SHIFT)];
+					int pos = (int)(e & TopKStore.SEGMENT_MASK) * TopKStore.ENTRY_SIZE;
+					int rank = numValues - 1 - Arrays.binarySearch(values, 0, numValues, segment.getDouble(pos + 4));
+					keys[n] = pack(rank, segment.getInt(pos));
+				}
+				Arrays.sort(keys, 0, counts[i]);
+				for (int n = 0; n < counts[i]; n++) {
+					long e = offset + n;
+					MappedByteBuffer segment = entries[(int)(e >>> TopKStore.SEGMENT_SHIFT)];
+					int pos = (int)(e & TopKStore.SEGMENT_MASK) * TopKStore.ENTRY_SIZE;
+					segment.putInt(pos, (int)keys[n]);
+					segment.putDouble(pos + 4, values[numValues - 1 - (int)(keys[n] >>> 32)]);
+				}
+				offset += counts[i];
+			}
+			for (MappedByteBuffer segment : entries) {
+				segment.force();
+			}
+			// sort the entries of each document by rank end
+		} finally {
+			raf.close();
+		}
+		logger.info("{} entries of {} documents written to {}.", new Object[] { numEntries, numDocs, file });
+	}
+	
+	private static DataInputStream open(File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+	}
+	
+	private static long pack(int high, int low) {
+		return ((long)high << 32) | (low & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Convert similarity tables to stores.
+	 *
+	 * @param args the names of the tables
+	 * @throws ClassNotFoundException if the database driver is missing
+	 * @throws SQLException on database error
+	 * @throws IOException on I/O error
+	 */
+	public static void main(String[] args) throws ClassNotFoundException, SQLException, IOException {
+		Properties p = Helper.getProperties();
+		File dir = SimilarityWriters.dir(p);
+		
+		Class.forName(p.getProperty("db.driver"));
+		Connection db = DriverManager.getConnection(p.getProperty("db.url"), p.getProperty("db.user"), p.getProperty("db.password"));
+		
+		for (String table : args) {
+			logger.info("Converting {}.", table);
+			TopKStoreWriter writer = new TopKStoreWriter(TopKStore.file(dir, table), 65536, 0);
+			Statement stmt = db.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(Integer.MIN_VALUE); // stream the results instead of buffering them in the driver
+			ResultSet res = stmt.executeQuery("SELECT document1, document2, value FROM `" + table + "`");
+			while (res.next()) {
+				writer.add(res.getInt(1), res.getInt(2), res.getDouble(3));
+			}
+			res.close();
+			stmt.close();
+			writer.close();
+		}
+		
+		db.close();
+	}
+}